@@ -0,0 +1,162 @@
+package com.example.chatappcs460;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.Configuration;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.TestDriver;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test for {@link MessageSyncWorker}, run against the Firestore emulator
+ * (started with {@code firebase emulators:start --only firestore}).
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageSyncWorkerTest {
+
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int EMULATOR_PORT = 8080;
+
+    private Context context;
+    private FirebaseFirestore db;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Configuration config = new Configuration.Builder()
+                .setExecutor(new SynchronousExecutor())
+                .build();
+        WorkManagerTestInitHelper.initializeTestWorkManager(context, config);
+        new SyncCursorStore(context).clear();
+        db = connectToEmulator();
+    }
+
+    @Test
+    public void doWork_prefetchesMessagesNewerThanCursor() throws Exception {
+        String conversationId = "sync-test-" + UUID.randomUUID();
+        long seenMillis = System.currentTimeMillis() - 60000;
+        long newMillis = seenMillis + 30000;
+        addMessage(conversationId, "seen", "already cached", seenMillis);
+        addMessage(conversationId, "new", "arrived while away", newMillis);
+
+        // Start from an empty cache, as if the app had been killed in the background
+        Tasks.await(db.terminate());
+        Tasks.await(db.clearPersistence());
+        db = connectToEmulator();
+
+        SyncCursorStore cursorStore = new SyncCursorStore(context);
+        cursorStore.markActive(conversationId, System.currentTimeMillis());
+        cursorStore.advance(conversationId, seenMillis);
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(MessageSyncWorker.class)
+                .setConstraints(MessageSyncWorker.constraints())
+                .build();
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.enqueue(request).getResult().get();
+        TestDriver testDriver = WorkManagerTestInitHelper.getTestDriver(context);
+        testDriver.setAllConstraintsMet(request.getId());
+
+        WorkInfo workInfo = workManager.getWorkInfoById(request.getId()).get();
+        assertEquals(WorkInfo.State.SUCCEEDED, workInfo.getState());
+        assertEquals(newMillis, cursorStore.getCursor(conversationId));
+
+        QuerySnapshot cached = Tasks.await(db.collection("conversations").document(conversationId)
+                .collection("messages").get(Source.CACHE));
+        assertEquals(1, cached.size());
+        assertEquals("new", cached.getDocuments().get(0).getId());
+    }
+
+    @Test
+    public void doWork_boundsEachConversationByItsOwnCursor() throws Exception {
+        long baseMillis = System.currentTimeMillis() - 600000;
+        String behind = "sync-test-" + UUID.randomUUID();
+        String ahead = "sync-test-" + UUID.randomUUID();
+        String neverOpened = "sync-test-" + UUID.randomUUID();
+        addMessage(behind, "behind-new", "older than the other cursor", baseMillis + 10000);
+        addMessage(ahead, "ahead-seen", "already cached", baseMillis + 20000);
+        addMessage(ahead, "ahead-new", "arrived while away", baseMillis + 30000);
+        addMessage(neverOpened, "first", "loaded when opened", baseMillis + 40000);
+
+        Tasks.await(db.terminate());
+        Tasks.await(db.clearPersistence());
+        db = connectToEmulator();
+
+        SyncCursorStore cursorStore = new SyncCursorStore(context);
+        long now = System.currentTimeMillis();
+        cursorStore.markActive(behind, now);
+        cursorStore.markActive(ahead, now);
+        cursorStore.markActive(neverOpened, now);
+        cursorStore.advance(behind, baseMillis);
+        cursorStore.advance(ahead, baseMillis + 20000);
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(MessageSyncWorker.class).build();
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.enqueue(request).getResult().get();
+
+        WorkInfo workInfo = workManager.getWorkInfoById(request.getId()).get();
+        assertEquals(WorkInfo.State.SUCCEEDED, workInfo.getState());
+        assertEquals(baseMillis + 10000, cursorStore.getCursor(behind));
+        assertEquals(baseMillis + 30000, cursorStore.getCursor(ahead));
+        assertEquals(0L, cursorStore.getCursor(neverOpened));
+
+        // The older cursor of one conversation must not pull already cached messages of another
+        QuerySnapshot cached = Tasks.await(db.collection("conversations").document(ahead)
+                .collection("messages").get(Source.CACHE));
+        assertEquals(1, cached.size());
+        assertEquals("ahead-new", cached.getDocuments().get(0).getId());
+        assertTrue(Tasks.await(db.collection("conversations").document(neverOpened)
+                .collection("messages").get(Source.CACHE)).isEmpty());
+    }
+
+    @Test
+    public void doWork_withoutRecentConversations_succeedsImmediately() throws Exception {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(MessageSyncWorker.class).build();
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.enqueue(request).getResult().get();
+
+        WorkInfo workInfo = workManager.getWorkInfoById(request.getId()).get();
+        assertEquals(WorkInfo.State.SUCCEEDED, workInfo.getState());
+    }
+
+    private FirebaseFirestore connectToEmulator() {
+        FirebaseFirestore instance = FirebaseFirestore.getInstance();
+        try {
+            instance.useEmulator(EMULATOR_HOST, EMULATOR_PORT);
+        } catch (IllegalStateException e) {
+            // Already connected to the emulator by an earlier test
+        }
+        return instance;
+    }
+
+    private void addMessage(String conversationId, String messageId, String text, long millis) throws Exception {
+        Map<String, Object> messageData = new HashMap<>();
+        messageData.put("conversationId", conversationId);
+        messageData.put("senderId", "sync-test-sender");
+        messageData.put("message", text);
+        messageData.put("timestamp", new Timestamp(new Date(millis)));
+        Tasks.await(db.collection("conversations").document(conversationId)
+                .collection("messages").document(messageId).set(messageData));
+    }
+}
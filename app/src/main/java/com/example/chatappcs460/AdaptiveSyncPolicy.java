@@ -0,0 +1,67 @@
+package com.example.chatappcs460;
+
+/**
+ * Tracks the sync policy that matches the current connection.
+ * Listens to a {@link ConnectivitySource} and reports a new {@link SyncPolicy}
+ * whenever a connection change calls for different settings.
+ */
+public class AdaptiveSyncPolicy implements ConnectivitySource.Listener {
+
+    /**
+     * Receives the new policy after a connection change.
+     */
+    public interface Listener {
+        void onPolicyChanged(SyncPolicy policy);
+    }
+
+    private final ConnectivitySource connectivitySource;
+    private SyncPolicy current;
+    private Listener listener;
+
+    /**
+     * Constructor for AdaptiveSyncPolicy.
+     *
+     * @param connectivitySource The source of connection quality changes.
+     */
+    public AdaptiveSyncPolicy(ConnectivitySource connectivitySource) {
+        this.connectivitySource = connectivitySource;
+        this.current = SyncPolicy.forQuality(connectivitySource.getQuality());
+    }
+
+    /**
+     * Starts following connection changes.
+     *
+     * @param listener The listener notified when the policy changes.
+     */
+    public void start(Listener listener) {
+        this.listener = listener;
+        connectivitySource.start(this);
+        onQualityChanged(connectivitySource.getQuality());
+    }
+
+    /**
+     * Stops following connection changes.
+     */
+    public void stop() {
+        connectivitySource.stop();
+        listener = null;
+    }
+
+    /**
+     * @return The policy for the current connection.
+     */
+    public SyncPolicy getCurrent() {
+        return current;
+    }
+
+    @Override
+    public void onQualityChanged(ConnectivitySource.Quality quality) {
+        SyncPolicy policy = SyncPolicy.forQuality(quality);
+        if (policy != current) {
+            current = policy;
+            if (listener != null) {
+                listener.onPolicyChanged(policy);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.chatappcs460;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Reads the connection quality from the system ConnectivityManager.
+ * Requires the ACCESS_NETWORK_STATE permission. Changes are delivered on the main thread.
+ */
+public class AndroidConnectivitySource implements ConnectivitySource {
+
+    // Below this estimated downstream bandwidth the connection is treated as constrained
+    private static final int CONSTRAINED_BANDWIDTH_KBPS = 500;
+
+    private final ConnectivityManager connectivityManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ConnectivityManager.NetworkCallback networkCallback;
+    private volatile Quality quality;
+
+    /**
+     * @param context The context used to access the ConnectivityManager.
+     */
+    public AndroidConnectivitySource(Context context) {
+        this.connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        Network network = connectivityManager.getActiveNetwork();
+        this.quality = classify(network != null ? connectivityManager.getNetworkCapabilities(network) : null);
+    }
+
+    @Override
+    public Quality getQuality() {
+        return quality;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        stop();
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+                update(listener, classify(capabilities));
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                update(listener, Quality.OFFLINE);
+            }
+        };
+        connectivityManager.registerDefaultNetworkCallback(networkCallback);
+    }
+
+    @Override
+    public void stop() {
+        if (networkCallback != null) {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+            networkCallback = null;
+        }
+    }
+
+    private void update(Listener listener, Quality newQuality) {
+        if (newQuality != quality) {
+            quality = newQuality;
+            mainHandler.post(() -> listener.onQualityChanged(newQuality));
+        }
+    }
+
+    /**
+     * Maps the capabilities of a network to a connection quality.
+     *
+     * @param capabilities The capabilities of the default network, or null if there is none.
+     * @return The connection quality.
+     */
+    private static Quality classify(NetworkCapabilities capabilities) {
+        if (capabilities == null
+                || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) {
+            return Quality.OFFLINE;
+        }
+        int bandwidthKbps = capabilities.getLinkDownstreamBandwidthKbps();
+        if (bandwidthKbps > 0 && bandwidthKbps < CONSTRAINED_BANDWIDTH_KBPS) {
+            return Quality.CONSTRAINED;
+        }
+        if (!capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) {
+            return Quality.METERED;
+        }
+        return Quality.UNMETERED;
+    }
+}
@@ -3,6 +3,8 @@ package com.example.chatappcs460;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 import android.widget.Button;
@@ -16,14 +18,24 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * Handles the chat interface, enabling users to send and receive messages.
@@ -34,7 +46,20 @@ public class ChatActivity extends AppCompatActivity {
     private RecyclerView recyclerViewMessages;
     private Button btnLogout, btnAddChatPartner, btnSend;
     private ChatAdapter chatAdapter;
-    private List<Message> messageList;
+    private MessageTimeline timeline;
+    private MessageBuffer messageBuffer;
+    private ListenerRegistration messagesRegistration;
+    private SyncCursorStore syncCursorStore;
+    private long newestCommittedTimestamp;
+    private DocumentSnapshot oldestLoaded;
+    private boolean loadingOlder;
+    private boolean reachedOldest;
+    private ChatCache chatCache;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private AdaptiveSyncPolicy adaptiveSyncPolicy;
+    private SyncPolicy subscribedPolicy;
+    private MessageOutbox<OutgoingMessage> outbox;
+    private Runnable pollTask;
     private FirebaseFirestore db;
     private FirebaseAuth auth;
     private String currentUserId;
@@ -63,21 +88,81 @@ public class ChatActivity extends AppCompatActivity {
         btnSend.setBackgroundColor(Color.parseColor("#FFD83D68"));
 
         // Initialize Firebase components
-        db = FirebaseFirestore.getInstance();
+        chatCache = ChatCache.getInstance(this);
+        db = chatCache.getFirestore();
         auth = FirebaseAuth.getInstance();
         currentUserId = auth.getCurrentUser().getUid();
 
+        // Keep recently active conversations warm while the app is in the background
+        syncCursorStore = new SyncCursorStore(this);
+        MessageSyncWorker.schedule(this);
+
+        // Adapt history size, send batching and listeners to the current connection
+        adaptiveSyncPolicy = new AdaptiveSyncPolicy(new AndroidConnectivitySource(this));
+        outbox = new MessageOutbox<>(adaptiveSyncPolicy, new MessageOutbox.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                handler.postDelayed(task, delayMillis);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+        }, this::writeMessages);
+        adaptiveSyncPolicy.start(this::onSyncPolicyChanged);
+
         // Setup RecyclerView
-        messageList = new ArrayList<>();
-        chatAdapter = new ChatAdapter(messageList, currentUserId);
+        timeline = new MessageTimeline();
+        messageBuffer = new MessageBuffer();
+        chatAdapter = new ChatAdapter(timeline, messageBuffer, currentUserId);
+        MessageTimeline.Listener adapterUpdates = new MessageTimeline.Listener() {
+            @Override
+            public void onInserted(int position, int slot) {
+                chatAdapter.notifyItemInserted(position);
+                if (position == timeline.size() - 1) {
+                    recyclerViewMessages.scrollToPosition(position);
+                }
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition, int slot) {
+                chatAdapter.notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int slot) {
+                chatAdapter.notifyItemChanged(position);
+            }
+
+            @Override
+            public void onRemoved(int position, int slot) {
+                chatAdapter.notifyItemRemoved(position);
+            }
+        };
+        // Day separators and sender runs are updated incrementally before reaching the adapter
+        timeline.setListener(new MessageGrouping(timeline, messageBuffer, TimeZone.getDefault(), adapterUpdates));
         recyclerViewMessages.setLayoutManager(new LinearLayoutManager(this));
         recyclerViewMessages.setAdapter(chatAdapter);
+        // Page in older history when the user scrolls to the top of the loaded messages
+        recyclerViewMessages.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (!recyclerView.canScrollVertically(-1)) {
+                    loadOlderMessages();
+                }
+            }
+        });
 
         // Load messages for the active conversation
         loadMessages();
 
         // Logout button functionality
         btnLogout.setOnClickListener(view -> {
+            outbox.flush();
+            MessageSyncWorker.cancel(this);
+            // Drop the size estimates, recency and statistics along with the sync cursors
+            chatCache.clear();
             FirebaseAuth.getInstance().signOut();
             startActivity(new Intent(ChatActivity.this, AuthActivity.class));
             finish();
@@ -215,11 +300,15 @@ public class ChatActivity extends AppCompatActivity {
      */
     private void setActiveConversation(String conversationId) {
         this.activeConversationId = conversationId;
+        syncCursorStore.markActive(conversationId, System.currentTimeMillis());
         loadMessages();
     }
 
     /**
      * Sends a message in the active conversation.
+     * The message is shown as pending right away and then goes through the outbox, which
+     * batches writes on slow or metered connections. Its document ID is chosen now, so the
+     * snapshot of the written message replaces the pending row instead of adding a second one.
      *
      * @param conversationId The ID of the active conversation.
      */
@@ -231,23 +320,23 @@ public class ChatActivity extends AppCompatActivity {
         }
 
         Map<String, Object> messageData = new HashMap<>();
+        messageData.put("conversationId", conversationId);
         messageData.put("senderId", currentUserId);
         messageData.put("message", message);
-        messageData.put("timestamp", System.currentTimeMillis());
+        messageData.put("timestamp", FieldValue.serverTimestamp());
 
-        db.collection("conversations").document(conversationId).collection("messages")
-                .add(messageData)
-                .addOnSuccessListener(documentReference -> {
-                    etMessage.setText("");
-                    Toast.makeText(this, "Message sent", Toast.LENGTH_SHORT).show();
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Failed to send message", Toast.LENGTH_SHORT).show();
-                });
+        DocumentReference reference = db.collection("conversations").document(conversationId)
+                .collection("messages").document();
+        long now = System.currentTimeMillis();
+        int slot = messageBuffer.append(currentUserId, message, now);
+        timeline.upsert(reference.getId(), slot, now, true);
+
+        outbox.enqueue(new OutgoingMessage(reference, messageData));
+        etMessage.setText("");
     }
 
     /**
-     * Loads messages for the active conversation in real-time.
+     * Loads messages for the active conversation, replacing those of the previous one.
      */
     private void loadMessages() {
         if (activeConversationId == null) {
@@ -255,24 +344,263 @@ public class ChatActivity extends AppCompatActivity {
             return;
         }
 
-        db.collection("conversations").document(activeConversationId).collection("messages")
+        // Detach the previous conversation before listening to the new one
+        detachMessages();
+        int previousSize = timeline.size();
+        timeline.clear();
+        messageBuffer.clear();
+        newestCommittedTimestamp = 0L;
+        oldestLoaded = null;
+        loadingOlder = false;
+        reachedOldest = false;
+        chatAdapter.notifyItemRangeRemoved(0, previousSize);
+
+        recordOpen(activeConversationId);
+        subscribeToMessages();
+    }
+
+    /**
+     * Records whether the conversation could be opened from the local cache.
+     * The latest page is looked up in the cache only, before anything is fetched, so the
+     * result is the same for live listeners and polling and does not depend on the network.
+     *
+     * @param conversationId The ID of the opened conversation.
+     */
+    private void recordOpen(String conversationId) {
+        int pageSize = adaptiveSyncPolicy.getCurrent().getHistoryPageSize();
+        db.collection("conversations").document(conversationId).collection("messages")
                 .orderBy("timestamp")
-                .addSnapshotListener((value, error) -> {
+                .limitToLast(pageSize)
+                .get(Source.CACHE)
+                .addOnCompleteListener(task -> chatCache.recordOpen(conversationId,
+                        task.isSuccessful() ? task.getResult().size() : 0, pageSize));
+    }
+
+    /**
+     * Follows the active conversation using the transport chosen by the sync policy:
+     * a real-time snapshot listener over the latest history page, or periodic polling
+     * for messages newer than the last one seen.
+     */
+    private void subscribeToMessages() {
+        detachMessages();
+        SyncPolicy policy = adaptiveSyncPolicy.getCurrent();
+        subscribedPolicy = policy;
+        String conversationId = activeConversationId;
+
+        if (!policy.usesLiveListeners()) {
+            pollMessages(conversationId, policy);
+            return;
+        }
+
+        messagesRegistration = db.collection("conversations").document(conversationId).collection("messages")
+                .orderBy("timestamp")
+                .limitToLast(policy.getHistoryPageSize())
+                .addSnapshotListener(MetadataChanges.INCLUDE, (value, error) -> {
                     if (error != null) {
                         Toast.makeText(ChatActivity.this, "Error loading messages", Toast.LENGTH_SHORT).show();
                         return;
                     }
 
                     if (value != null) {
-                        for (DocumentChange dc : value.getDocumentChanges()) {
-                            if (dc.getType() == DocumentChange.Type.ADDED) {
-                                Message message = dc.getDocument().toObject(Message.class);
-                                messageList.add(message);
-                                chatAdapter.notifyItemInserted(messageList.size() - 1);
-                                recyclerViewMessages.scrollToPosition(messageList.size() - 1);
-                            }
+                        applyMessageChanges(conversationId, value);
+                    }
+                });
+    }
+
+    /**
+     * Fetches new messages once and schedules the next poll.
+     *
+     * @param conversationId The ID of the polled conversation.
+     * @param policy         The policy providing the page size and poll interval.
+     */
+    private void pollMessages(String conversationId, SyncPolicy policy) {
+        Query query = db.collection("conversations").document(conversationId).collection("messages")
+                .orderBy("timestamp");
+        if (newestCommittedTimestamp > 0L) {
+            query = query.whereGreaterThan("timestamp", new Timestamp(new Date(newestCommittedTimestamp)))
+                    .limit(policy.getHistoryPageSize());
+        } else {
+            query = query.limitToLast(policy.getHistoryPageSize());
+        }
+
+        query.get()
+                .addOnSuccessListener(value -> {
+                    if (conversationId.equals(activeConversationId)) {
+                        applyMessageChanges(conversationId, value);
+                    }
+                })
+                .addOnFailureListener(e -> Log.w("FirestoreDebug", "Polling messages failed: " + e.getMessage()));
+
+        pollTask = () -> pollMessages(conversationId, policy);
+        handler.postDelayed(pollTask, policy.getPollIntervalMillis());
+    }
+
+    /**
+     * Fetches the page of messages just before the oldest loaded one.
+     * The live listener and polling only cover the latest page, so older history is read
+     * once on demand and goes through the same timeline path as new messages.
+     * Pages are bounded by the oldest loaded document rather than its timestamp, so paging
+     * also reaches the numeric timestamps of older messages and never stalls on messages
+     * sharing a timestamp.
+     */
+    private void loadOlderMessages() {
+        // Wait for the first page, so there is a committed message to page back from
+        if (activeConversationId == null || loadingOlder || reachedOldest || oldestLoaded == null) {
+            return;
+        }
+        String conversationId = activeConversationId;
+        int pageSize = adaptiveSyncPolicy.getCurrent().getHistoryPageSize();
+        loadingOlder = true;
+
+        db.collection("conversations").document(conversationId).collection("messages")
+                .orderBy("timestamp")
+                .endBefore(oldestLoaded)
+                .limitToLast(pageSize)
+                .get()
+                .addOnSuccessListener(value -> {
+                    if (conversationId.equals(activeConversationId)) {
+                        loadingOlder = false;
+                        // The cache may hold only part of the history, so only the server proves the end
+                        if (!value.getMetadata().isFromCache()) {
+                            reachedOldest = value.size() < pageSize;
                         }
+                        applyMessageChanges(conversationId, value);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    if (conversationId.equals(activeConversationId)) {
+                        loadingOlder = false;
+                    }
+                    Log.w("FirestoreDebug", "Loading older messages failed: " + e.getMessage());
+                });
+    }
+
+    /**
+     * Stops the current snapshot listener or polling loop, if any.
+     */
+    private void detachMessages() {
+        if (messagesRegistration != null) {
+            messagesRegistration.remove();
+            messagesRegistration = null;
+        }
+        if (pollTask != null) {
+            handler.removeCallbacks(pollTask);
+            pollTask = null;
+        }
+    }
+
+    /**
+     * Applies a snapshot of message changes to the timeline, which keeps them in server
+     * timestamp order and notifies the adapter of the exact positions that changed.
+     *
+     * @param conversationId The ID of the conversation the snapshot belongs to.
+     * @param value          The query snapshot.
+     */
+    private void applyMessageChanges(String conversationId, QuerySnapshot value) {
+        boolean fromCache = value.getMetadata().isFromCache();
+
+        for (DocumentChange dc : value.getDocumentChanges()) {
+            // Messages are never deleted; removals only mean a message left the history page
+            if (dc.getType() == DocumentChange.Type.REMOVED) {
+                continue;
+            }
+            DocumentSnapshot document = dc.getDocument();
+            long timestamp = MessageDocuments.readTimestamp(document);
+            String senderId = document.getString("senderId");
+            String text = document.getString("message");
+            int slot = timeline.slotOf(document.getId());
+            if (slot < 0) {
+                slot = messageBuffer.append(senderId, text, timestamp);
+            } else {
+                messageBuffer.update(slot, senderId, text, timestamp);
+            }
+            boolean pending = document.getMetadata().hasPendingWrites();
+            if (!fromCache && !pending) {
+                chatCache.recordMessage(conversationId, text, timestamp);
+            }
+            timeline.upsert(document.getId(), slot, timestamp, pending);
+            if (!pending) {
+                newestCommittedTimestamp = Math.max(newestCommittedTimestamp, timestamp);
+                if (oldestLoaded == null || MessageDocuments.compareQueryOrder(document, oldestLoaded) < 0) {
+                    oldestLoaded = document;
+                }
+            }
+        }
+        // Only server-confirmed snapshots prove the cache is complete up to this point
+        if (!fromCache) {
+            chatCache.advanceCursor(conversationId, newestCommittedTimestamp);
+        }
+    }
+
+    /**
+     * Reacts to a change of network conditions.
+     * Sends waiting messages if the new policy allows it, and switches between
+     * live listeners and polling when required.
+     *
+     * @param policy The policy for the new connection.
+     */
+    private void onSyncPolicyChanged(SyncPolicy policy) {
+        outbox.flushIfDue();
+        if (activeConversationId != null && subscribedPolicy != null
+                && policy.usesLiveListeners() != subscribedPolicy.usesLiveListeners()) {
+            subscribeToMessages();
+        }
+    }
+
+    /**
+     * Writes a batch of outgoing messages in a single Firestore write batch.
+     * If the write is rejected, their pending rows are removed again.
+     *
+     * @param messages The messages to write.
+     */
+    private void writeMessages(List<OutgoingMessage> messages) {
+        WriteBatch batch = db.batch();
+        for (OutgoingMessage outgoing : messages) {
+            batch.set(outgoing.reference, outgoing.data);
+        }
+        batch.commit()
+                .addOnSuccessListener(aVoid -> {
+                    Toast.makeText(this, "Message sent", Toast.LENGTH_SHORT).show();
+                })
+                .addOnFailureListener(e -> {
+                    for (OutgoingMessage outgoing : messages) {
+                        timeline.remove(outgoing.reference.getId());
                     }
+                    Toast.makeText(this, "Failed to send message", Toast.LENGTH_SHORT).show();
                 });
     }
+
+    /**
+     * Sends any waiting messages when the activity leaves the screen. Once written, they are
+     * kept by Firestore's local persistence even if the process is killed in the background.
+     */
+    @Override
+    protected void onStop() {
+        outbox.flush();
+        super.onStop();
+    }
+
+    /**
+     * Sends any waiting messages and stops following the conversation and the network.
+     */
+    @Override
+    protected void onDestroy() {
+        outbox.flush();
+        detachMessages();
+        adaptiveSyncPolicy.stop();
+        super.onDestroy();
+    }
+
+    /**
+     * A message waiting in the outbox, with the document it will be written to.
+     */
+    private static final class OutgoingMessage {
+        final DocumentReference reference;
+        final Map<String, Object> data;
+
+        OutgoingMessage(DocumentReference reference, Map<String, Object> data) {
+            this.reference = reference;
+            this.data = data;
+        }
+    }
 }
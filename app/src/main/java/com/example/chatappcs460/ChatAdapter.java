@@ -8,26 +8,32 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
+import java.text.DateFormat;
+import java.util.Date;
 
 /**
  * Adapter class for managing chat messages in a RecyclerView.
- * Handles the display of sent and received messages.
+ * Handles the display of sent and received messages, day separators, and
+ * the tighter spacing of consecutive messages from the same sender.
  */
 public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHolder> {
 
-    private final List<Message> messageList;
-    private final String currentUserId;
+    private final MessageTimeline timeline;
+    private final MessageBuffer buffer;
+    private final int currentSenderIndex;
+    private final DateFormat dayFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
 
     /**
      * Constructor for ChatAdapter.
      *
-     * @param messageList   The list of messages to display.
+     * @param timeline      The ordered messages to display.
+     * @param buffer        The storage holding the message content.
      * @param currentUserId The ID of the current user (used to distinguish sent and received messages).
      */
-    public ChatAdapter(List<Message> messageList, String currentUserId) {
-        this.messageList = messageList;
-        this.currentUserId = currentUserId;
+    public ChatAdapter(MessageTimeline timeline, MessageBuffer buffer, String currentUserId) {
+        this.timeline = timeline;
+        this.buffer = buffer;
+        this.currentSenderIndex = buffer.internSender(currentUserId);
     }
 
     @NonNull
@@ -40,15 +46,30 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
 
     @Override
     public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
-        Message message = messageList.get(position);
+        int slot = timeline.slotAt(position);
+        int flags = buffer.getFlags(slot);
+
+        // Show the date above the first message of each day
+        if ((flags & MessageGrouping.FLAG_DAY_START) != 0) {
+            holder.tvDaySeparator.setText(dayFormat.format(new Date(buffer.getTimestamp(slot))));
+            holder.tvDaySeparator.setVisibility(View.VISIBLE);
+        } else {
+            holder.tvDaySeparator.setVisibility(View.GONE);
+        }
+
+        // Keep consecutive messages from the same sender close together
+        int topPadding = (flags & MessageGrouping.FLAG_RUN_START) != 0
+                ? holder.runStartPadding : holder.runContinuationPadding;
+        holder.itemView.setPadding(holder.itemView.getPaddingLeft(), topPadding,
+                holder.itemView.getPaddingRight(), holder.itemView.getPaddingBottom());
 
         // Check if the message was sent by the current user
-        if (message.getSenderId().equals(currentUserId)) {
-            holder.tvMessageSent.setText(message.getMessage());
+        if (buffer.getSenderIndex(slot) == currentSenderIndex) {
+            holder.tvMessageSent.setText(buffer.getText(slot));
             holder.tvMessageSent.setVisibility(View.VISIBLE);
             holder.tvMessageReceived.setVisibility(View.GONE);
         } else {
-            holder.tvMessageReceived.setText(message.getMessage());
+            holder.tvMessageReceived.setText(buffer.getText(slot));
             holder.tvMessageReceived.setVisibility(View.VISIBLE);
             holder.tvMessageSent.setVisibility(View.GONE);
         }
@@ -56,14 +77,15 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
 
     @Override
     public int getItemCount() {
-        return messageList.size(); // Returns the number of messages in the list.
+        return timeline.size(); // Returns the number of messages in the timeline.
     }
 
     /**
      * ViewHolder class for holding the UI elements of a chat message.
      */
     static class MessageViewHolder extends RecyclerView.ViewHolder {
-        TextView tvMessageSent, tvMessageReceived;
+        TextView tvDaySeparator, tvMessageSent, tvMessageReceived;
+        final int runStartPadding, runContinuationPadding;
 
         /**
          * Constructor for MessageViewHolder.
@@ -72,8 +94,11 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
          */
         public MessageViewHolder(@NonNull View itemView) {
             super(itemView);
+            tvDaySeparator = itemView.findViewById(R.id.tvDaySeparator); // Date shown above the first message of a day.
             tvMessageSent = itemView.findViewById(R.id.tvMessageSent); // Sent message TextView.
             tvMessageReceived = itemView.findViewById(R.id.tvMessageReceived); // Received message TextView.
+            runStartPadding = itemView.getPaddingTop();
+            runContinuationPadding = Math.round(itemView.getResources().getDisplayMetrics().density);
         }
     }
 }
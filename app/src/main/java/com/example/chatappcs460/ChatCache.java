@@ -0,0 +1,159 @@
+package com.example.chatappcs460;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.PersistentCacheSettings;
+
+import java.util.List;
+
+/**
+ * Manages the local chat cache around the shared FirebaseFirestore instance.
+ * The hard limit on disk use is Firestore's own persistent cache size, applied before
+ * Firestore is first used; its garbage collection removes the least recently used documents
+ * that no active query needs. On top of that, a {@link ConversationCacheIndex} estimates the
+ * size of each conversation and tracks recency and hit rate. When the estimate exceeds a
+ * smaller budget, cold conversations are dropped from background prefetching, so they stop
+ * being refreshed and become the first candidates for Firestore's garbage collection.
+ * Size estimates are persisted with the sync cursors and survive restarts.
+ */
+public class ChatCache {
+
+    static final long CACHE_SIZE_BYTES = 50L * 1024 * 1024;
+    // Below the Firestore cache size, so cold conversations are released before its collector has to choose
+    static final long INDEX_BUDGET_BYTES = 40L * 1024 * 1024;
+    static final int HOT_CONVERSATIONS = 5;
+    // An open only counts as a hit if the cache can fill about a screen of messages
+    static final int MIN_CACHED_MESSAGES_FOR_HIT = 15;
+    // Rough on-disk size of a message document besides its text
+    private static final int DOCUMENT_OVERHEAD_BYTES = 200;
+
+    private static ChatCache instance;
+
+    private final SyncCursorStore syncCursorStore;
+    private final ConversationCacheIndex index;
+    private FirebaseFirestore configuredFirestore;
+
+    private ChatCache(Context context) {
+        this.syncCursorStore = new SyncCursorStore(context);
+        this.index = new ConversationCacheIndex(INDEX_BUDGET_BYTES, HOT_CONVERSATIONS);
+        index.setEvictionListener(conversationId -> {
+            syncCursorStore.forget(conversationId);
+            Log.d("FirestoreDebug", "Evicted cold conversation " + conversationId);
+        });
+
+        // Restore recency and size estimates of the conversations opened before, oldest first
+        List<String> recent = syncCursorStore.recentConversations(0L, Integer.MAX_VALUE);
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            index.touch(recent.get(i));
+        }
+        for (String conversationId : recent) {
+            index.recordStored(conversationId, syncCursorStore.getCachedBytes(conversationId));
+        }
+    }
+
+    /**
+     * @param context Any context; the application context is retained.
+     * @return The process-wide chat cache.
+     */
+    public static synchronized ChatCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the FirebaseFirestore instance with the configured cache size applied.
+     *
+     * @return The shared FirebaseFirestore instance.
+     */
+    public synchronized FirebaseFirestore getFirestore() {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        if (db != configuredFirestore) {
+            FirebaseFirestoreSettings settings = new FirebaseFirestoreSettings.Builder(db.getFirestoreSettings())
+                    .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                            .setSizeBytes(CACHE_SIZE_BYTES)
+                            .build())
+                    .build();
+            try {
+                db.setFirestoreSettings(settings);
+            } catch (IllegalStateException e) {
+                Log.w("FirestoreDebug", "Firestore already in use, keeping its cache settings");
+            }
+            configuredFirestore = db;
+        }
+        return db;
+    }
+
+    /**
+     * Records that a conversation was opened, counting a hit if the local cache held a
+     * useful part of its latest page: at least a screen of messages, or the whole page if
+     * pages are smaller than that.
+     *
+     * @param conversationId The ID of the conversation.
+     * @param cachedMessages The number of messages of its latest page found in the local cache.
+     * @param pageSize       The size of the page that was looked up.
+     */
+    public synchronized void recordOpen(String conversationId, int cachedMessages, int pageSize) {
+        boolean hit = cachedMessages >= Math.min(pageSize, MIN_CACHED_MESSAGES_FOR_HIT);
+        index.recordOpen(conversationId, hit);
+        Log.d("FirestoreDebug", "Cache " + (hit ? "hit" : "miss") + " for " + conversationId + ": " + index.describeStats());
+    }
+
+    /**
+     * Records a message read from the server, and so stored in the local cache.
+     * Messages already counted on an earlier load, such as a page read again when a
+     * conversation is reopened, are ignored. Must be called before the sync cursor is
+     * advanced past the message.
+     *
+     * @param conversationId  The ID of the conversation.
+     * @param text            The message text, used to estimate its size.
+     * @param timestampMillis The timestamp of the message.
+     */
+    public synchronized void recordMessage(String conversationId, String text, long timestampMillis) {
+        // Everything from the oldest counted message up to the cursor has been counted
+        long oldestCounted = syncCursorStore.getOldestCounted(conversationId);
+        if (oldestCounted > 0L && timestampMillis >= oldestCounted
+                && timestampMillis <= syncCursorStore.getCursor(conversationId)) {
+            return;
+        }
+        syncCursorStore.extendCounted(conversationId, timestampMillis);
+
+        int textBytes = text != null ? text.length() * 2 : 0;
+        index.recordStored(conversationId, DOCUMENT_OVERHEAD_BYTES + textBytes);
+        if (index.contains(conversationId)) {
+            syncCursorStore.setCachedBytes(conversationId, index.getCachedBytes(conversationId));
+        }
+    }
+
+    /**
+     * Moves the sync cursor of a conversation forward, unless the conversation has been
+     * evicted in the meantime, so eviction and cursor state always change together.
+     *
+     * @param conversationId  The ID of the conversation.
+     * @param timestampMillis The timestamp of the newest message now in the cache.
+     */
+    public synchronized void advanceCursor(String conversationId, long timestampMillis) {
+        if (index.contains(conversationId)) {
+            syncCursorStore.advance(conversationId, timestampMillis);
+        }
+    }
+
+    /**
+     * Forgets all conversations and statistics, for example when the user logs out.
+     */
+    public synchronized void clear() {
+        index.clear();
+        syncCursorStore.clear();
+    }
+
+    /**
+     * @return A one-line summary of the cache statistics.
+     */
+    public synchronized String describeStats() {
+        return index.describeStats();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.chatappcs460;
+
+/**
+ * Reports the quality of the current network connection.
+ * Implementations can read the real device state or simulate a network in tests.
+ */
+public interface ConnectivitySource {
+
+    /**
+     * The connection classes the sync policy distinguishes, from worst to best.
+     */
+    enum Quality {
+        OFFLINE,
+        CONSTRAINED,
+        METERED,
+        UNMETERED
+    }
+
+    /**
+     * Receives connection quality changes.
+     */
+    interface Listener {
+        void onQualityChanged(Quality quality);
+    }
+
+    /**
+     * @return The quality of the current connection.
+     */
+    Quality getQuality();
+
+    /**
+     * Starts reporting quality changes to the listener.
+     *
+     * @param listener The listener notified on every change.
+     */
+    void start(Listener listener);
+
+    /**
+     * Stops reporting quality changes.
+     */
+    void stop();
+}
@@ -0,0 +1,252 @@
+package com.example.chatappcs460;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Accounts for the estimated locally cached chat data of each conversation and decides
+ * which conversations to evict. Conversations are kept in access order. When the estimate
+ * exceeds the budget, cold conversations are evicted, least recently opened first, until it
+ * fits again; the hottest conversations are never evicted, even if they alone exceed it.
+ * Also counts cache hits and misses when conversations are opened.
+ */
+public class ConversationCacheIndex {
+
+    /**
+     * Receives the eviction decisions so they can be applied to the real cache.
+     */
+    public interface EvictionListener {
+        void onConversationEvicted(String conversationId);
+    }
+
+    private static final EvictionListener NO_OP = conversationId -> {
+    };
+
+    /**
+     * A tracked conversation, linked into the recency list that runs from coldest to hottest.
+     */
+    private static final class Entry {
+        final String conversationId;
+        long bytes;
+        Entry colder;
+        Entry hotter;
+
+        Entry(String conversationId) {
+            this.conversationId = conversationId;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Entry coldest;
+    private Entry hottest;
+    private final long budgetBytes;
+    private final int hotConversations;
+    private EvictionListener evictionListener = NO_OP;
+    private long usedBytes;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * Constructor for ConversationCacheIndex.
+     *
+     * @param budgetBytes      The most cached data to keep across all conversations.
+     * @param hotConversations The number of most recently opened conversations never evicted.
+     */
+    public ConversationCacheIndex(long budgetBytes, int hotConversations) {
+        this.budgetBytes = budgetBytes;
+        this.hotConversations = hotConversations;
+    }
+
+    /**
+     * @param listener The listener notified of evictions, or null to clear it.
+     */
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener != null ? listener : NO_OP;
+    }
+
+    /**
+     * Records that a conversation was opened, making it the most recently used.
+     *
+     * @param conversationId The ID of the conversation.
+     * @param hit            Whether its messages could be shown from the local cache.
+     */
+    public void recordOpen(String conversationId, boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+        touch(conversationId);
+    }
+
+    /**
+     * Records that a conversation was opened without counting a hit or miss.
+     *
+     * @param conversationId The ID of the conversation.
+     */
+    public void touch(String conversationId) {
+        Entry entry = entries.get(conversationId);
+        if (entry == null) {
+            entry = new Entry(conversationId);
+            entries.put(conversationId, entry);
+        } else if (entry == hottest) {
+            return;
+        } else {
+            unlink(entry);
+        }
+        entry.colder = hottest;
+        if (hottest != null) {
+            hottest.hotter = entry;
+        } else {
+            coldest = entry;
+        }
+        hottest = entry;
+    }
+
+    /**
+     * Records newly cached data for a conversation and evicts if the budget is exceeded.
+     * Does not change the recency of a conversation that is already tracked; one that is not,
+     * such as data prefetched for a conversation never opened, starts as the coldest.
+     *
+     * @param conversationId The ID of the conversation.
+     * @param bytes          The estimated size of the newly cached data.
+     */
+    public void recordStored(String conversationId, long bytes) {
+        Entry entry = entries.get(conversationId);
+        if (entry == null) {
+            entry = new Entry(conversationId);
+            entries.put(conversationId, entry);
+            entry.hotter = coldest;
+            if (coldest != null) {
+                coldest.colder = entry;
+            } else {
+                hottest = entry;
+            }
+            coldest = entry;
+        }
+        entry.bytes += bytes;
+        usedBytes += bytes;
+        evictIfNeeded();
+    }
+
+    /**
+     * @param conversationId The ID of the conversation.
+     * @return Whether the conversation is still tracked as cached.
+     */
+    public boolean contains(String conversationId) {
+        return entries.containsKey(conversationId);
+    }
+
+    /**
+     * @param conversationId The ID of the conversation.
+     * @return The estimated cached size of the conversation, or 0 if it is not cached.
+     */
+    public long getCachedBytes(String conversationId) {
+        Entry entry = entries.get(conversationId);
+        return entry != null ? entry.bytes : 0L;
+    }
+
+    /**
+     * @return The conversations treated as hot, most recently opened first.
+     */
+    public List<String> getHotConversations() {
+        List<String> hot = new ArrayList<>();
+        for (Entry entry = hottest; entry != null && hot.size() < hotConversations; entry = entry.colder) {
+            hot.add(entry.conversationId);
+        }
+        return hot;
+    }
+
+    /**
+     * @return The estimated size of all cached chat data.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return The number of conversation opens served from the cache.
+     */
+    public int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of conversation opens that had to wait for the network.
+     */
+    public int getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The fraction of opens served from the cache, or 0 if nothing was opened yet.
+     */
+    public double getHitRate() {
+        int opens = hits + misses;
+        return opens == 0 ? 0.0 : (double) hits / opens;
+    }
+
+    /**
+     * @return The number of conversations evicted.
+     */
+    public int getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return A one-line summary of the cache statistics, for logging.
+     */
+    public String describeStats() {
+        return String.format(Locale.US, "hits=%d misses=%d hitRate=%.2f used=%d/%d bytes evictions=%d",
+                hits, misses, getHitRate(), usedBytes, budgetBytes, evictions);
+    }
+
+    /**
+     * Forgets all conversations and resets the statistics.
+     */
+    public void clear() {
+        entries.clear();
+        coldest = null;
+        hottest = null;
+        usedBytes = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    private void evictIfNeeded() {
+        if (usedBytes <= budgetBytes) {
+            return;
+        }
+
+        // Only cold conversations are evicted, least recently opened first
+        int coldCount = entries.size() - hotConversations;
+        while (coldCount-- > 0 && usedBytes > budgetBytes) {
+            Entry entry = coldest;
+            unlink(entry);
+            entries.remove(entry.conversationId);
+            usedBytes -= entry.bytes;
+            evictions++;
+            evictionListener.onConversationEvicted(entry.conversationId);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.colder != null) {
+            entry.colder.hotter = entry.hotter;
+        } else {
+            coldest = entry.hotter;
+        }
+        if (entry.hotter != null) {
+            entry.hotter.colder = entry.colder;
+        } else {
+            hottest = entry.colder;
+        }
+        entry.colder = null;
+        entry.hotter = null;
+    }
+}
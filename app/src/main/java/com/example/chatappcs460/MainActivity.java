@@ -39,7 +39,7 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize Firebase components
         mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
+        db = ChatCache.getInstance(this).getFirestore();
 
         // Initialize UI components
         etEmail = findViewById(R.id.etEmail);
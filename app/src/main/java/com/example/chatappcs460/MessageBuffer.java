@@ -0,0 +1,251 @@
+package com.example.chatappcs460;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact columnar storage for the loaded messages of a conversation.
+ * Each message occupies a slot: timestamps are kept in a primitive array, senders as
+ * indexes into an interned sender table, and message text as UTF-8 in one shared
+ * byte store. Slots are stable, so the timeline can order them without copying messages.
+ * A flags column holds per-message layout state such as day and run boundaries.
+ */
+public class MessageBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+    // Compact the text store once this many bytes are no longer referenced by any slot
+    private static final int COMPACTION_THRESHOLD_BYTES = 64 * 1024;
+
+    private final List<String> senderTable = new ArrayList<>();
+    private final Map<String, Integer> senderIndexes = new HashMap<>();
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int[] senders = new int[INITIAL_CAPACITY];
+    private int[] textOffsets = new int[INITIAL_CAPACITY];
+    private int[] textLengths = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private byte[] text = new byte[INITIAL_CAPACITY * 32];
+    private int textSize;
+    private int deadTextBytes;
+    private int count;
+
+    /**
+     * Stores a message in a new slot.
+     *
+     * @param senderId  The ID of the user who sent the message.
+     * @param message   The content of the message.
+     * @param timestamp The timestamp of the message.
+     * @return The slot holding the message.
+     */
+    public int append(String senderId, String message, long timestamp) {
+        if (count == timestamps.length) {
+            int capacity = count * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            senders = Arrays.copyOf(senders, capacity);
+            textOffsets = Arrays.copyOf(textOffsets, capacity);
+            textLengths = Arrays.copyOf(textLengths, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        int slot = count++;
+        timestamps[slot] = timestamp;
+        flags[slot] = 0;
+        senders[slot] = internSender(senderId);
+        setText(slot, message);
+        return slot;
+    }
+
+    /**
+     * Updates the content of an existing slot. Unchanged text is not copied again, and
+     * new text that fits is written over the old text in place.
+     *
+     * @param slot      The slot to update.
+     * @param senderId  The ID of the user who sent the message.
+     * @param message   The content of the message.
+     * @param timestamp The timestamp of the message.
+     */
+    public void update(int slot, String senderId, String message, long timestamp) {
+        checkSlot(slot);
+        timestamps[slot] = timestamp;
+        senders[slot] = internSender(senderId);
+        if (getText(slot).equals(message != null ? message : "")) {
+            return;
+        }
+        byte[] encoded = encode(message);
+        int oldLength = textLengths[slot];
+        if (encoded.length <= oldLength) {
+            System.arraycopy(encoded, 0, text, textOffsets[slot], encoded.length);
+            textLengths[slot] = encoded.length;
+            deadTextBytes += oldLength - encoded.length;
+        } else {
+            deadTextBytes += oldLength;
+            writeText(slot, encoded);
+        }
+        if (deadTextBytes > COMPACTION_THRESHOLD_BYTES && deadTextBytes > textSize / 2) {
+            compactText();
+        }
+    }
+
+    /**
+     * Returns the index of a sender in the sender table, adding it if needed.
+     *
+     * @param senderId The ID of the sender.
+     * @return The sender's index.
+     */
+    public int internSender(String senderId) {
+        String key = senderId != null ? senderId : "";
+        Integer index = senderIndexes.get(key);
+        if (index == null) {
+            index = senderTable.size();
+            senderTable.add(key);
+            senderIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param slot The slot of the message.
+     * @return The timestamp of the message.
+     */
+    public long getTimestamp(int slot) {
+        checkSlot(slot);
+        return timestamps[slot];
+    }
+
+    /**
+     * @param slot The slot of the message.
+     * @return The index of the sender in the sender table.
+     */
+    public int getSenderIndex(int slot) {
+        checkSlot(slot);
+        return senders[slot];
+    }
+
+    /**
+     * @param slot The slot of the message.
+     * @return The sender ID of the message.
+     */
+    public String getSenderId(int slot) {
+        return senderTable.get(getSenderIndex(slot));
+    }
+
+    /**
+     * Materializes the message text. Intended for binding a visible row only.
+     *
+     * @param slot The slot of the message.
+     * @return The message content.
+     */
+    public String getText(int slot) {
+        checkSlot(slot);
+        return new String(text, textOffsets[slot], textLengths[slot], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param slot The slot of the message.
+     * @return The layout flags of the message.
+     */
+    public int getFlags(int slot) {
+        checkSlot(slot);
+        return flags[slot];
+    }
+
+    /**
+     * @param slot  The slot of the message.
+     * @param value The new layout flags of the message.
+     */
+    public void setFlags(int slot, int value) {
+        checkSlot(slot);
+        flags[slot] = (byte) value;
+    }
+
+    /**
+     * @return The number of occupied slots.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return The number of distinct senders seen so far.
+     */
+    public int senderCount() {
+        return senderTable.size();
+    }
+
+    /**
+     * @return The number of bytes in use in the shared text store, including dead text.
+     */
+    int getTextStoreSize() {
+        return textSize;
+    }
+
+    /**
+     * Releases all slots. The sender table is kept, so sender indexes stay valid.
+     */
+    public void clear() {
+        count = 0;
+        textSize = 0;
+        deadTextBytes = 0;
+    }
+
+    /**
+     * Shrinks the backing arrays to the stored content.
+     */
+    public void trimToSize() {
+        if (deadTextBytes > 0) {
+            compactText();
+        }
+        int capacity = Math.max(count, 1);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        senders = Arrays.copyOf(senders, capacity);
+        textOffsets = Arrays.copyOf(textOffsets, capacity);
+        textLengths = Arrays.copyOf(textLengths, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        text = Arrays.copyOf(text, Math.max(textSize, 1));
+    }
+
+    private void setText(int slot, String message) {
+        writeText(slot, encode(message));
+    }
+
+    private void writeText(int slot, byte[] encoded) {
+        int length = encoded.length;
+        if (textSize + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + length));
+        }
+        System.arraycopy(encoded, 0, text, textSize, length);
+        textOffsets[slot] = textSize;
+        textLengths[slot] = length;
+        textSize += length;
+    }
+
+    /**
+     * Rewrites the text store so it only holds text still referenced by a slot.
+     */
+    private void compactText() {
+        byte[] compacted = new byte[Math.max(textSize - deadTextBytes, INITIAL_CAPACITY)];
+        int size = 0;
+        for (int slot = 0; slot < count; slot++) {
+            int length = textLengths[slot];
+            System.arraycopy(text, textOffsets[slot], compacted, size, length);
+            textOffsets[slot] = size;
+            size += length;
+        }
+        text = compacted;
+        textSize = size;
+        deadTextBytes = 0;
+    }
+
+    private static byte[] encode(String message) {
+        return (message != null ? message : "").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= count) {
+            throw new IndexOutOfBoundsException("Slot " + slot + ", size " + count);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.chatappcs460;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/**
+ * Reads the fields of message documents in the same way for the chat screen and the background sync.
+ */
+public final class MessageDocuments {
+
+    private MessageDocuments() {
+    }
+
+    /**
+     * Reads the timestamp of a message document in milliseconds.
+     * Uses the local estimate while a server timestamp is still pending, and accepts
+     * the numeric timestamps written by older versions of the app.
+     *
+     * @param document The message document.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public static long readTimestamp(DocumentSnapshot document) {
+        Object value = document.get("timestamp", DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate().getTime();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Compares two committed message documents in the order of a query on {@code timestamp},
+     * the order Firestore uses for query cursors. Firestore sorts numbers before timestamps,
+     * so numeric timestamps written by older versions of the app come first regardless of
+     * their value; ties are broken by document ID.
+     *
+     * @param a The first message document.
+     * @param b The second message document.
+     * @return A negative number, zero or a positive number as {@code a} sorts before, with or after {@code b}.
+     */
+    public static int compareQueryOrder(DocumentSnapshot a, DocumentSnapshot b) {
+        Object first = a.get("timestamp");
+        Object second = b.get("timestamp");
+        int result = Integer.compare(typeOrder(first), typeOrder(second));
+        if (result == 0 && first instanceof Number) {
+            result = Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+        } else if (result == 0 && first instanceof Timestamp) {
+            result = ((Timestamp) first).compareTo((Timestamp) second);
+        }
+        return result != 0 ? result : a.getId().compareTo(b.getId());
+    }
+
+    private static int typeOrder(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return 1;
+        }
+        return value instanceof Timestamp ? 2 : 3;
+    }
+}
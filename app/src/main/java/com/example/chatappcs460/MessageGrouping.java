@@ -0,0 +1,126 @@
+package com.example.chatappcs460;
+
+import java.util.TimeZone;
+
+/**
+ * Maintains day separators and same-sender run grouping as messages arrive.
+ * Sits between the timeline and the adapter: each change only recomputes the flags of
+ * the affected message and its direct successor, found through the timeline's neighbour
+ * links, and forwards a change notification only for rows whose flags actually changed.
+ */
+public class MessageGrouping implements MessageTimeline.Listener {
+
+    /** The message is the first of its calendar day and shows a date separator. */
+    public static final int FLAG_DAY_START = 1;
+    /** The message starts a run of consecutive messages from the same sender. */
+    public static final int FLAG_RUN_START = 1 << 1;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final MessageTimeline timeline;
+    private final MessageBuffer buffer;
+    private final TimeZone timeZone;
+    private final MessageTimeline.Listener downstream;
+
+    /**
+     * Constructor for MessageGrouping.
+     *
+     * @param timeline   The timeline whose changes are observed.
+     * @param buffer     The storage holding the messages and their flags.
+     * @param timeZone   The time zone used to decide calendar days.
+     * @param downstream The listener receiving the resulting row updates, usually the adapter.
+     */
+    public MessageGrouping(MessageTimeline timeline, MessageBuffer buffer, TimeZone timeZone,
+                           MessageTimeline.Listener downstream) {
+        this.timeline = timeline;
+        this.buffer = buffer;
+        this.timeZone = timeZone;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void onInserted(int position, int slot) {
+        refresh(slot);
+        downstream.onInserted(position, slot);
+        refreshNext(position, slot);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition, int slot) {
+        downstream.onMoved(fromPosition, toPosition, slot);
+
+        // The message that used to follow the moved one now follows its old predecessor
+        int formerNextPosition = fromPosition < toPosition ? fromPosition : fromPosition + 1;
+        if (formerNextPosition < timeline.size()) {
+            int formerNext = timeline.slotAt(formerNextPosition);
+            if (refresh(formerNext)) {
+                downstream.onChanged(formerNextPosition, formerNext);
+            }
+        }
+        if (refresh(slot)) {
+            downstream.onChanged(toPosition, slot);
+        }
+        refreshNext(toPosition, slot);
+    }
+
+    @Override
+    public void onChanged(int position, int slot) {
+        refresh(slot);
+        downstream.onChanged(position, slot);
+        refreshNext(position, slot);
+    }
+
+    @Override
+    public void onRemoved(int position, int slot) {
+        downstream.onRemoved(position, slot);
+        if (position < timeline.size()) {
+            int next = timeline.slotAt(position);
+            if (refresh(next)) {
+                downstream.onChanged(position, next);
+            }
+        }
+    }
+
+    /**
+     * Computes the flags a message should have given the message displayed before it.
+     *
+     * @param slot The slot of the message.
+     * @return The layout flags of the message.
+     */
+    int computeFlags(int slot) {
+        int previous = timeline.previousSlot(slot);
+        if (previous < 0 || day(previous) != day(slot)) {
+            return FLAG_DAY_START | FLAG_RUN_START;
+        }
+        if (buffer.getSenderIndex(previous) != buffer.getSenderIndex(slot)) {
+            return FLAG_RUN_START;
+        }
+        return 0;
+    }
+
+    private void refreshNext(int position, int slot) {
+        int next = timeline.nextSlot(slot);
+        if (next >= 0 && refresh(next)) {
+            downstream.onChanged(position + 1, next);
+        }
+    }
+
+    /**
+     * Recomputes the flags of a message.
+     *
+     * @return Whether the flags changed.
+     */
+    private boolean refresh(int slot) {
+        int flags = computeFlags(slot);
+        if (flags == buffer.getFlags(slot)) {
+            return false;
+        }
+        buffer.setFlags(slot, flags);
+        return true;
+    }
+
+    private long day(int slot) {
+        long timestamp = buffer.getTimestamp(slot);
+        return Math.floorDiv(timestamp + timeZone.getOffset(timestamp), MILLIS_PER_DAY);
+    }
+}
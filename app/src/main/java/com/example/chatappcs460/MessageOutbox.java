@@ -0,0 +1,100 @@
+package com.example.chatappcs460;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects outgoing messages and sends them in batches.
+ * Batch size and maximum wait come from the current {@link SyncPolicy}, so messages
+ * go out one by one on a good connection and are grouped on a slow or metered one.
+ *
+ * @param <T> The type of the outgoing messages.
+ */
+public class MessageOutbox<T> {
+
+    /**
+     * Runs delayed tasks, typically backed by a main thread Handler.
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    /**
+     * Writes a batch of messages, typically as a single Firestore WriteBatch.
+     */
+    public interface Sender<T> {
+        void send(List<T> messages);
+    }
+
+    private final AdaptiveSyncPolicy syncPolicy;
+    private final Scheduler scheduler;
+    private final Sender<T> sender;
+    private final List<T> pending = new ArrayList<>();
+    private final Runnable flushTask = this::flush;
+    private boolean flushScheduled;
+
+    /**
+     * Constructor for MessageOutbox.
+     *
+     * @param syncPolicy The policy providing the batch size and flush interval.
+     * @param scheduler  The scheduler used for delayed flushes.
+     * @param sender     The sender receiving each batch.
+     */
+    public MessageOutbox(AdaptiveSyncPolicy syncPolicy, Scheduler scheduler, Sender<T> sender) {
+        this.syncPolicy = syncPolicy;
+        this.scheduler = scheduler;
+        this.sender = sender;
+    }
+
+    /**
+     * Adds a message to the outbox, sending it now if the batch is full.
+     *
+     * @param message The message to write.
+     */
+    public void enqueue(T message) {
+        pending.add(message);
+        flushIfDue();
+    }
+
+    /**
+     * Re-evaluates the pending messages against the current policy.
+     * Called after a policy change so that a faster connection sends waiting messages at once.
+     */
+    public void flushIfDue() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        SyncPolicy policy = syncPolicy.getCurrent();
+        if (pending.size() >= policy.getOutboxBatchSize() || policy.getOutboxFlushIntervalMillis() <= 0) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.postDelayed(flushTask, policy.getOutboxFlushIntervalMillis());
+        }
+    }
+
+    /**
+     * Sends all pending messages as one batch.
+     */
+    public void flush() {
+        if (flushScheduled) {
+            scheduler.cancel(flushTask);
+            flushScheduled = false;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<T> batch = new ArrayList<>(pending);
+        pending.clear();
+        sender.send(batch);
+    }
+
+    /**
+     * @return The number of messages waiting to be sent.
+     */
+    public int size() {
+        return pending.size();
+    }
+}
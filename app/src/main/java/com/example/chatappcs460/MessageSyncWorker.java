@@ -0,0 +1,160 @@
+package com.example.chatappcs460;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Filter;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefetches new messages for recently active conversations while the app is in the background.
+ * Results are read from the server, which stores them in the Firestore local cache, so the
+ * next time a conversation is opened its snapshot listener renders fresh content immediately.
+ */
+public class MessageSyncWorker extends Worker {
+
+    static final String UNIQUE_WORK_NAME = "message_sync";
+    static final long RECENT_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(7);
+    static final int MAX_CONVERSATIONS = 30;
+    // Firestore accepts at most 30 disjunctions in an or filter
+    static final int CONVERSATIONS_PER_QUERY = 30;
+    static final int MAX_MESSAGES_PER_QUERY = 500;
+
+    /**
+     * Constructor for MessageSyncWorker.
+     *
+     * @param context      The application context.
+     * @param workerParams The parameters provided by WorkManager.
+     */
+    public MessageSyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the periodic background sync, keeping an already scheduled job.
+     *
+     * @param context The context used to access WorkManager.
+     */
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(MessageSyncWorker.class, 15, TimeUnit.MINUTES)
+                .setConstraints(constraints())
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Cancels the periodic background sync.
+     *
+     * @param context The context used to access WorkManager.
+     */
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+    }
+
+    /**
+     * @return The conditions under which the sync is allowed to run.
+     */
+    static Constraints constraints() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+    }
+
+    /**
+     * Fetches messages newer than each conversation's cursor, batching the
+     * conversations into as few collection group queries as possible.
+     *
+     * @return Success, or retry if a query failed.
+     */
+    @NonNull
+    @Override
+    public Result doWork() {
+        SyncCursorStore cursorStore = new SyncCursorStore(getApplicationContext());
+        List<String> conversationIds = cursorStore.recentConversations(
+                System.currentTimeMillis() - RECENT_WINDOW_MILLIS, MAX_CONVERSATIONS);
+        if (conversationIds.isEmpty()) {
+            return Result.success();
+        }
+
+        ChatCache chatCache = ChatCache.getInstance(getApplicationContext());
+        FirebaseFirestore db = chatCache.getFirestore();
+        try {
+            for (int start = 0; start < conversationIds.size(); start += CONVERSATIONS_PER_QUERY) {
+                List<String> batch = conversationIds.subList(start,
+                        Math.min(start + CONVERSATIONS_PER_QUERY, conversationIds.size()));
+                syncBatch(db, chatCache, cursorStore, batch);
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            Log.w("FirestoreDebug", "Background message sync failed: " + e.getMessage());
+            return Result.retry();
+        }
+        return Result.success();
+    }
+
+    /**
+     * Runs one query covering a batch of conversations, each bounded by its own cursor, so only
+     * messages newer than what is already cached are read. Conversations without a cursor are
+     * skipped; their first page is loaded by the chat screen when they are opened.
+     */
+    private void syncBatch(FirebaseFirestore db, ChatCache chatCache, SyncCursorStore cursorStore, List<String> batch)
+            throws ExecutionException, InterruptedException {
+        List<Filter> newerThanCursor = new ArrayList<>();
+        for (String conversationId : batch) {
+            long cursor = cursorStore.getCursor(conversationId);
+            if (cursor > 0L) {
+                newerThanCursor.add(Filter.and(
+                        Filter.equalTo("conversationId", conversationId),
+                        Filter.greaterThan("timestamp", new Timestamp(new Date(cursor)))));
+            }
+        }
+        if (newerThanCursor.isEmpty()) {
+            return;
+        }
+
+        QuerySnapshot snapshot = Tasks.await(db.collectionGroup("messages")
+                .where(Filter.or(newerThanCursor.toArray(new Filter[0])))
+                .orderBy("timestamp")
+                .limit(MAX_MESSAGES_PER_QUERY)
+                .get(Source.SERVER));
+
+        Map<String, Long> newest = new HashMap<>();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            String conversationId = document.getString("conversationId");
+            long timestamp = MessageDocuments.readTimestamp(document);
+            chatCache.recordMessage(conversationId, document.getString("message"), timestamp);
+            Long current = newest.get(conversationId);
+            if (current == null || timestamp > current) {
+                newest.put(conversationId, timestamp);
+            }
+        }
+        for (Map.Entry<String, Long> entry : newest.entrySet()) {
+            // Recording may have evicted the conversation, whose cursor must then stay forgotten
+            chatCache.advanceCursor(entry.getKey(), entry.getValue());
+        }
+        Log.d("FirestoreDebug", "Prefetched " + snapshot.size() + " messages for " + batch.size() + " conversations");
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.chatappcs460;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Keeps the messages of a conversation in display order.
+ * Messages are ordered by server timestamp, with pending writes placed after all
+ * committed messages and the document ID used as a tiebreaker. Backed by a
+ * size-augmented treap, so positional insert, move and lookup are O(log n) and
+ * every change is reported to the listener as an exact adapter range update.
+ * The timeline only orders {@link MessageBuffer} slots; message content stays in the buffer.
+ * Neighbouring slots are also linked directly, so adjacent messages are found in O(1).
+ */
+public class MessageTimeline {
+
+    /**
+     * Receives the position changes produced by the timeline.
+     */
+    public interface Listener {
+        void onInserted(int position, int slot);
+
+        void onMoved(int fromPosition, int toPosition, int slot);
+
+        void onChanged(int position, int slot);
+
+        void onRemoved(int position, int slot);
+    }
+
+    private static final Listener NO_OP = new Listener() {
+        @Override
+        public void onInserted(int position, int slot) {
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition, int slot) {
+        }
+
+        @Override
+        public void onChanged(int position, int slot) {
+        }
+
+        @Override
+        public void onRemoved(int position, int slot) {
+        }
+    };
+
+    /**
+     * A single tree node holding one message slot and its ordering key.
+     */
+    private static final class Node {
+        final String id;
+        final int priority;
+        long timestamp;
+        boolean pending;
+        int slot;
+        Node left, right;
+        int size = 1;
+
+        Node(String id, long timestamp, boolean pending, int slot, int priority) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.pending = pending;
+            this.slot = slot;
+            this.priority = priority;
+        }
+    }
+
+    private final Map<String, Node> nodesById = new HashMap<>();
+    private final Random random = new Random();
+    private Node root;
+    private Listener listener = NO_OP;
+    private int[] previousSlots = new int[0];
+    private int[] nextSlots = new int[0];
+
+    /**
+     * @param listener The listener notified of every position change, or null to clear it.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : NO_OP;
+    }
+
+    /**
+     * Inserts a message or updates an existing one with the same document ID,
+     * moving it if its ordering key changed.
+     *
+     * @param id        The Firestore document ID of the message.
+     * @param slot      The buffer slot holding the message content.
+     * @param timestamp The server timestamp, or the local estimate while pending.
+     * @param pending   Whether the write has not yet been committed by the server.
+     * @return The position of the message after the update.
+     */
+    public int upsert(String id, int slot, long timestamp, boolean pending) {
+        Node node = nodesById.get(id);
+        if (node == null) {
+            node = new Node(id, timestamp, pending, slot, random.nextInt());
+            nodesById.put(id, node);
+            root = insert(root, node);
+            link(node);
+            int position = rank(node);
+            listener.onInserted(position, slot);
+            return position;
+        }
+
+        if (node.timestamp == timestamp && node.pending == pending) {
+            if (node.slot != slot) {
+                unlink(node.slot);
+                node.slot = slot;
+                link(node);
+            }
+            int position = rank(node);
+            listener.onChanged(position, slot);
+            return position;
+        }
+
+        int from = rank(node);
+        root = delete(root, node);
+        unlink(node.slot);
+        node.timestamp = timestamp;
+        node.pending = pending;
+        node.slot = slot;
+        node.left = null;
+        node.right = null;
+        node.size = 1;
+        root = insert(root, node);
+        link(node);
+        int to = rank(node);
+        if (from == to) {
+            listener.onChanged(to, slot);
+        } else {
+            listener.onMoved(from, to, slot);
+        }
+        return to;
+    }
+
+    /**
+     * Removes the message with the given document ID, if present.
+     *
+     * @param id The Firestore document ID of the message.
+     * @return The position the message occupied, or -1 if it was not present.
+     */
+    public int remove(String id) {
+        Node node = nodesById.remove(id);
+        if (node == null) {
+            return -1;
+        }
+        int position = rank(node);
+        root = delete(root, node);
+        unlink(node.slot);
+        listener.onRemoved(position, node.slot);
+        return position;
+    }
+
+    /**
+     * Removes all messages without notifying the listener.
+     */
+    public void clear() {
+        nodesById.clear();
+        root = null;
+        Arrays.fill(previousSlots, -1);
+        Arrays.fill(nextSlots, -1);
+    }
+
+    /**
+     * @param position The display position.
+     * @return The buffer slot of the message at the given position.
+     */
+    public int slotAt(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (position < leftSize) {
+                node = node.left;
+            } else if (position == leftSize) {
+                return node.slot;
+            } else {
+                position -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * @param id The Firestore document ID of the message.
+     * @return The position of the message, or -1 if it is not present.
+     */
+    public int indexOf(String id) {
+        Node node = nodesById.get(id);
+        return node != null ? rank(node) : -1;
+    }
+
+    /**
+     * @param id The Firestore document ID of the message.
+     * @return The buffer slot of the message, or -1 if it is not present.
+     */
+    public int slotOf(String id) {
+        Node node = nodesById.get(id);
+        return node != null ? node.slot : -1;
+    }
+
+    /**
+     * @param slot The buffer slot of a message in the timeline.
+     * @return The slot of the message displayed just before it, or -1 if it is the first.
+     */
+    public int previousSlot(int slot) {
+        return previousSlots[slot];
+    }
+
+    /**
+     * @param slot The buffer slot of a message in the timeline.
+     * @return The slot of the message displayed just after it, or -1 if it is the last.
+     */
+    public int nextSlot(int slot) {
+        return nextSlots[slot];
+    }
+
+    /**
+     * @return The number of messages in the timeline.
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @return The height of the underlying tree, used to check the balance in tests.
+     */
+    int height() {
+        return height(root);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    /**
+     * Orders committed messages before pending ones, then by timestamp, then by ID.
+     */
+    private static int compare(Node a, Node b) {
+        if (a.pending != b.pending) {
+            return a.pending ? 1 : -1;
+        }
+        if (a.timestamp != b.timestamp) {
+            return a.timestamp < b.timestamp ? -1 : 1;
+        }
+        return a.id.compareTo(b.id);
+    }
+
+    /**
+     * Links a node that was just inserted into the tree between its neighbours.
+     */
+    private void link(Node target) {
+        ensureSlotCapacity(target.slot);
+        Node previous = null;
+        Node next = null;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(target, node);
+            if (cmp < 0) {
+                next = node;
+                node = node.left;
+            } else if (cmp > 0) {
+                previous = node;
+                node = node.right;
+            } else {
+                previous = max(node.left, previous);
+                next = min(node.right, next);
+                break;
+            }
+        }
+        int previousSlot = previous != null ? previous.slot : -1;
+        int nextSlot = next != null ? next.slot : -1;
+        previousSlots[target.slot] = previousSlot;
+        nextSlots[target.slot] = nextSlot;
+        if (previousSlot >= 0) {
+            nextSlots[previousSlot] = target.slot;
+        }
+        if (nextSlot >= 0) {
+            previousSlots[nextSlot] = target.slot;
+        }
+    }
+
+    /**
+     * Joins the neighbours of a slot that is leaving the tree.
+     */
+    private void unlink(int slot) {
+        int previousSlot = previousSlots[slot];
+        int nextSlot = nextSlots[slot];
+        if (previousSlot >= 0) {
+            nextSlots[previousSlot] = nextSlot;
+        }
+        if (nextSlot >= 0) {
+            previousSlots[nextSlot] = previousSlot;
+        }
+        previousSlots[slot] = -1;
+        nextSlots[slot] = -1;
+    }
+
+    private void ensureSlotCapacity(int slot) {
+        if (slot >= previousSlots.length) {
+            int oldLength = previousSlots.length;
+            int capacity = Math.max(slot + 1, Math.max(16, oldLength * 2));
+            previousSlots = Arrays.copyOf(previousSlots, capacity);
+            nextSlots = Arrays.copyOf(nextSlots, capacity);
+            Arrays.fill(previousSlots, oldLength, capacity, -1);
+            Arrays.fill(nextSlots, oldLength, capacity, -1);
+        }
+    }
+
+    private static Node max(Node node, Node fallback) {
+        if (node == null) {
+            return fallback;
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    private static Node min(Node node, Node fallback) {
+        if (node == null) {
+            return fallback;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private int rank(Node target) {
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(target, node);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        throw new IllegalStateException("Message " + target.id + " is not in the timeline");
+    }
+
+    private static Node insert(Node node, Node target) {
+        if (node == null) {
+            return target;
+        }
+        if (compare(target, node) < 0) {
+            node.left = insert(node.left, target);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, target);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node delete(Node node, Node target) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(target, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, target);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, target);
+        } else {
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
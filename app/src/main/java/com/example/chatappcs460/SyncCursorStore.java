@@ -0,0 +1,153 @@
+package com.example.chatappcs460;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the background sync state of each conversation.
+ * Tracks when the user last opened a conversation and the timestamp of the newest
+ * message already present in the local cache, so a sync only fetches what is new,
+ * as well as the estimated size of its cached messages.
+ */
+public class SyncCursorStore {
+
+    private static final String PREFS_NAME = "message_sync";
+    private static final String ACTIVE_PREFIX = "active_";
+    private static final String CURSOR_PREFIX = "cursor_";
+    private static final String BYTES_PREFIX = "bytes_";
+    private static final String COUNTED_PREFIX = "counted_";
+
+    private final SharedPreferences prefs;
+
+    /**
+     * @param context The context used to open the preferences file.
+     */
+    public SyncCursorStore(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Records that the user has just opened a conversation.
+     *
+     * @param conversationId The ID of the conversation.
+     * @param nowMillis      The current time in milliseconds.
+     */
+    public void markActive(String conversationId, long nowMillis) {
+        prefs.edit().putLong(ACTIVE_PREFIX + conversationId, nowMillis).apply();
+    }
+
+    /**
+     * Moves the cursor of a conversation forward. Older timestamps are ignored.
+     *
+     * @param conversationId  The ID of the conversation.
+     * @param timestampMillis The timestamp of the newest message now in the cache.
+     */
+    public void advance(String conversationId, long timestampMillis) {
+        if (timestampMillis > getCursor(conversationId)) {
+            prefs.edit().putLong(CURSOR_PREFIX + conversationId, timestampMillis).apply();
+        }
+    }
+
+    /**
+     * @param conversationId The ID of the conversation.
+     * @return The timestamp of the newest cached message, or 0 if none has been seen.
+     */
+    public long getCursor(String conversationId) {
+        return prefs.getLong(CURSOR_PREFIX + conversationId, 0L);
+    }
+
+    /**
+     * Moves the timestamp of the oldest message counted in the size estimate back.
+     * Newer timestamps are ignored.
+     *
+     * @param conversationId  The ID of the conversation.
+     * @param timestampMillis The timestamp of a message just counted.
+     */
+    public void extendCounted(String conversationId, long timestampMillis) {
+        long oldest = getOldestCounted(conversationId);
+        if (oldest == 0L || timestampMillis < oldest) {
+            prefs.edit().putLong(COUNTED_PREFIX + conversationId, timestampMillis).apply();
+        }
+    }
+
+    /**
+     * Returns the timestamp of the oldest message counted in the size estimate. Together with
+     * the cursor, it bounds the messages that were already counted.
+     *
+     * @param conversationId The ID of the conversation.
+     * @return The timestamp of the oldest counted message, or 0 if none was counted.
+     */
+    public long getOldestCounted(String conversationId) {
+        return prefs.getLong(COUNTED_PREFIX + conversationId, 0L);
+    }
+
+    /**
+     * @param conversationId The ID of the conversation.
+     * @return The estimated size of its cached messages, or 0 if none were recorded.
+     */
+    public long getCachedBytes(String conversationId) {
+        return prefs.getLong(BYTES_PREFIX + conversationId, 0L);
+    }
+
+    /**
+     * @param conversationId The ID of the conversation.
+     * @param bytes          The estimated size of its cached messages.
+     */
+    public void setCachedBytes(String conversationId, long bytes) {
+        prefs.edit().putLong(BYTES_PREFIX + conversationId, bytes).apply();
+    }
+
+    /**
+     * Returns the conversations opened since the given time, most recent first.
+     *
+     * @param sinceMillis The oldest activity time to include.
+     * @param limit       The maximum number of conversations to return.
+     * @return The IDs of the recently active conversations.
+     */
+    public List<String> recentConversations(long sinceMillis, int limit) {
+        List<Map.Entry<String, Long>> active = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getKey().startsWith(ACTIVE_PREFIX) && entry.getValue() instanceof Long) {
+                long lastActive = (Long) entry.getValue();
+                if (lastActive >= sinceMillis) {
+                    String conversationId = entry.getKey().substring(ACTIVE_PREFIX.length());
+                    active.add(new AbstractMap.SimpleEntry<>(conversationId, lastActive));
+                }
+            }
+        }
+        Collections.sort(active, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        List<String> conversationIds = new ArrayList<>();
+        for (int i = 0; i < active.size() && i < limit; i++) {
+            conversationIds.add(active.get(i).getKey());
+        }
+        return conversationIds;
+    }
+
+    /**
+     * Forgets a single conversation, so it is no longer prefetched.
+     *
+     * @param conversationId The ID of the conversation.
+     */
+    public void forget(String conversationId) {
+        prefs.edit()
+                .remove(ACTIVE_PREFIX + conversationId)
+                .remove(CURSOR_PREFIX + conversationId)
+                .remove(BYTES_PREFIX + conversationId)
+                .remove(COUNTED_PREFIX + conversationId)
+                .apply();
+    }
+
+    /**
+     * Forgets all conversations, for example when the user logs out.
+     */
+    public void clear() {
+        prefs.edit().clear().apply();
+    }
+}
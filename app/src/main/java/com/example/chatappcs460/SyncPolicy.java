@@ -0,0 +1,100 @@
+package com.example.chatappcs460;
+
+/**
+ * The sync settings used for one class of network connection.
+ * Controls how much history is loaded, how outgoing messages are batched,
+ * the quality used for attachments, and whether live listeners are kept attached.
+ */
+public final class SyncPolicy {
+
+    static final SyncPolicy UNMETERED = new SyncPolicy(200, 1, 0L, 90, 80, true, 0L);
+    static final SyncPolicy METERED = new SyncPolicy(50, 5, 1000L, 70, 50, true, 0L);
+    static final SyncPolicy CONSTRAINED = new SyncPolicy(20, 20, 5000L, 40, 25, false, 30000L);
+    // Offline writes and listeners are served by the local cache, so nothing is held back
+    static final SyncPolicy OFFLINE = new SyncPolicy(50, 1, 0L, 70, 50, true, 0L);
+
+    private final int historyPageSize;
+    private final int outboxBatchSize;
+    private final long outboxFlushIntervalMillis;
+    private final int attachmentQuality;
+    private final int thumbnailQuality;
+    private final boolean liveListeners;
+    private final long pollIntervalMillis;
+
+    private SyncPolicy(int historyPageSize, int outboxBatchSize, long outboxFlushIntervalMillis,
+                       int attachmentQuality, int thumbnailQuality, boolean liveListeners, long pollIntervalMillis) {
+        this.historyPageSize = historyPageSize;
+        this.outboxBatchSize = outboxBatchSize;
+        this.outboxFlushIntervalMillis = outboxFlushIntervalMillis;
+        this.attachmentQuality = attachmentQuality;
+        this.thumbnailQuality = thumbnailQuality;
+        this.liveListeners = liveListeners;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * @param quality The quality of the current connection.
+     * @return The policy to use for that connection.
+     */
+    public static SyncPolicy forQuality(ConnectivitySource.Quality quality) {
+        switch (quality) {
+            case UNMETERED:
+                return UNMETERED;
+            case METERED:
+                return METERED;
+            case CONSTRAINED:
+                return CONSTRAINED;
+            default:
+                return OFFLINE;
+        }
+    }
+
+    /**
+     * @return The number of most recent messages loaded when a conversation is opened.
+     */
+    public int getHistoryPageSize() {
+        return historyPageSize;
+    }
+
+    /**
+     * @return The number of outgoing messages that triggers an immediate flush.
+     */
+    public int getOutboxBatchSize() {
+        return outboxBatchSize;
+    }
+
+    /**
+     * @return The longest time an outgoing message waits for a batch, or 0 to send immediately.
+     */
+    public long getOutboxFlushIntervalMillis() {
+        return outboxFlushIntervalMillis;
+    }
+
+    /**
+     * @return The compression quality (0-100) for uploaded attachments.
+     */
+    public int getAttachmentQuality() {
+        return attachmentQuality;
+    }
+
+    /**
+     * @return The compression quality (0-100) for downloaded thumbnails.
+     */
+    public int getThumbnailQuality() {
+        return thumbnailQuality;
+    }
+
+    /**
+     * @return Whether real-time snapshot listeners stay attached.
+     */
+    public boolean usesLiveListeners() {
+        return liveListeners;
+    }
+
+    /**
+     * @return The polling interval used when live listeners are detached.
+     */
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+}
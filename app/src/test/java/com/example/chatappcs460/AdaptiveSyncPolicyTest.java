@@ -0,0 +1,169 @@
+package com.example.chatappcs460;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link AdaptiveSyncPolicy} and {@link MessageOutbox} on a simulated network.
+ */
+public class AdaptiveSyncPolicyTest {
+
+    /**
+     * A network whose quality is changed by the test.
+     */
+    private static final class SimulatedConnectivitySource implements ConnectivitySource {
+        private Quality quality;
+        private Listener listener;
+
+        SimulatedConnectivitySource(Quality quality) {
+            this.quality = quality;
+        }
+
+        void switchTo(Quality newQuality) {
+            quality = newQuality;
+            if (listener != null) {
+                listener.onQualityChanged(newQuality);
+            }
+        }
+
+        @Override
+        public Quality getQuality() {
+            return quality;
+        }
+
+        @Override
+        public void start(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void stop() {
+            listener = null;
+        }
+    }
+
+    /**
+     * A scheduler driven by a manual clock.
+     */
+    private static final class ManualScheduler implements MessageOutbox.Scheduler {
+        private final Map<Runnable, Long> tasks = new HashMap<>();
+        private long now;
+
+        void advanceBy(long millis) {
+            now += millis;
+            for (Runnable task : new ArrayList<>(tasks.keySet())) {
+                if (tasks.get(task) <= now) {
+                    tasks.remove(task);
+                    task.run();
+                }
+            }
+        }
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            tasks.put(task, now + delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            tasks.remove(task);
+        }
+    }
+
+    private final SimulatedConnectivitySource network = new SimulatedConnectivitySource(ConnectivitySource.Quality.UNMETERED);
+    private final AdaptiveSyncPolicy syncPolicy = new AdaptiveSyncPolicy(network);
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final List<List<Map<String, Object>>> sentBatches = new ArrayList<>();
+    private final MessageOutbox<Map<String, Object>> outbox = new MessageOutbox<>(syncPolicy, scheduler, sentBatches::add);
+    private final List<SyncPolicy> policyChanges = new ArrayList<>();
+
+    public AdaptiveSyncPolicyTest() {
+        syncPolicy.start(policyChanges::add);
+    }
+
+    @Test
+    public void policy_followsConnectionQuality() {
+        assertSame(SyncPolicy.UNMETERED, syncPolicy.getCurrent());
+        assertTrue(syncPolicy.getCurrent().usesLiveListeners());
+
+        network.switchTo(ConnectivitySource.Quality.CONSTRAINED);
+        SyncPolicy constrained = syncPolicy.getCurrent();
+        assertFalse(constrained.usesLiveListeners());
+        assertTrue(constrained.getPollIntervalMillis() > 0);
+        assertTrue(constrained.getHistoryPageSize() < SyncPolicy.UNMETERED.getHistoryPageSize());
+        assertTrue(constrained.getOutboxBatchSize() > SyncPolicy.UNMETERED.getOutboxBatchSize());
+        assertTrue(constrained.getThumbnailQuality() < SyncPolicy.UNMETERED.getThumbnailQuality());
+        assertTrue(constrained.getAttachmentQuality() < SyncPolicy.UNMETERED.getAttachmentQuality());
+
+        network.switchTo(ConnectivitySource.Quality.METERED);
+        assertSame(SyncPolicy.METERED, syncPolicy.getCurrent());
+        assertEquals(2, policyChanges.size());
+    }
+
+    @Test
+    public void repeatedQuality_doesNotNotify() {
+        network.switchTo(ConnectivitySource.Quality.UNMETERED);
+        assertTrue(policyChanges.isEmpty());
+
+        syncPolicy.stop();
+        network.switchTo(ConnectivitySource.Quality.METERED);
+        assertTrue(policyChanges.isEmpty());
+    }
+
+    @Test
+    public void unmeteredOutbox_sendsImmediately() {
+        outbox.enqueue(message("one"));
+        outbox.enqueue(message("two"));
+
+        assertEquals(2, sentBatches.size());
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    public void meteredOutbox_batchesUntilFullOrInterval() {
+        network.switchTo(ConnectivitySource.Quality.METERED);
+        int batchSize = SyncPolicy.METERED.getOutboxBatchSize();
+
+        for (int i = 0; i < batchSize; i++) {
+            outbox.enqueue(message("full " + i));
+        }
+        assertEquals(1, sentBatches.size());
+        assertEquals(batchSize, sentBatches.get(0).size());
+
+        outbox.enqueue(message("late"));
+        scheduler.advanceBy(SyncPolicy.METERED.getOutboxFlushIntervalMillis() - 1);
+        assertEquals(1, sentBatches.size());
+        scheduler.advanceBy(1);
+        assertEquals(2, sentBatches.size());
+        assertEquals(1, sentBatches.get(1).size());
+    }
+
+    @Test
+    public void improvedConnection_flushesWaitingMessages() {
+        network.switchTo(ConnectivitySource.Quality.CONSTRAINED);
+        outbox.enqueue(message("waiting"));
+        assertEquals(1, outbox.size());
+
+        network.switchTo(ConnectivitySource.Quality.UNMETERED);
+        outbox.flushIfDue();
+        assertEquals(0, outbox.size());
+        assertEquals(1, sentBatches.size());
+
+        // The cancelled delayed flush must not send an empty batch later
+        scheduler.advanceBy(SyncPolicy.CONSTRAINED.getOutboxFlushIntervalMillis());
+        assertEquals(1, sentBatches.size());
+    }
+
+    private static Map<String, Object> message(String text) {
+        Map<String, Object> messageData = new HashMap<>();
+        messageData.put("conversationId", "conversation");
+        messageData.put("message", text);
+        return messageData;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.chatappcs460;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ConversationCacheIndex} eviction order and statistics.
+ */
+public class ConversationCacheIndexTest {
+
+    private static final long BUDGET = 100000;
+    private static final int HOT = 2;
+    private static final long PAGE = 10000;
+
+    private final ConversationCacheIndex index = new ConversationCacheIndex(BUDGET, HOT);
+    private final List<String> evicted = new ArrayList<>();
+
+    public ConversationCacheIndexTest() {
+        index.setEvictionListener(evicted::add);
+    }
+
+    @Test
+    public void overBudget_evictsColdestConversationsFirst() {
+        for (int i = 0; i < 5; i++) {
+            index.recordOpen("c" + i, false);
+            index.recordStored("c" + i, 20000);
+        }
+        assertTrue(evicted.isEmpty());
+
+        // Reopening c0 makes it hot again, so c1 is now the coldest
+        index.recordOpen("c0", true);
+        index.recordStored("c4", 30000);
+
+        assertEquals("[c1, c2]", evicted.toString());
+        assertTrue(index.getUsedBytes() <= BUDGET);
+        assertTrue(index.contains("c0"));
+        assertTrue(index.contains("c3"));
+        assertEquals(2, index.getEvictionCount());
+    }
+
+    @Test
+    public void hotConversationsOverBudget_areNeverEvicted() {
+        index.recordOpen("hot-old", false);
+        index.recordOpen("hot-new", false);
+        for (int i = 0; i < 50; i++) {
+            index.recordStored("hot-old", 5000);
+            index.recordStored("hot-new", 5000);
+        }
+
+        // Nothing cold is left to evict, so the estimate stays over budget
+        assertTrue(evicted.isEmpty());
+        assertEquals(500000, index.getUsedBytes());
+        assertEquals(250000, index.getCachedBytes("hot-old"));
+        assertEquals("[hot-new, hot-old]", index.getHotConversations().toString());
+    }
+
+    @Test
+    public void manyColdConversations_neverEvictHotOnes() {
+        index.recordOpen("favourite", true);
+        index.recordStored("favourite", PAGE);
+        for (int i = 0; i < 200; i++) {
+            // Prefetched in the background without ever being opened
+            index.recordStored("cold" + i, 3000);
+            assertTrue(index.getUsedBytes() <= BUDGET);
+        }
+
+        assertFalse(evicted.contains("favourite"));
+        assertEquals(PAGE, index.getCachedBytes("favourite"));
+        assertEquals("favourite", index.getHotConversations().get(0));
+        assertEquals(170, evicted.size());
+    }
+
+    @Test
+    public void unopenedConversation_startsColderThanOpenedOnes() {
+        index.recordOpen("a", false);
+        index.recordStored("a", 40000);
+        index.recordOpen("b", false);
+        index.recordStored("b", 40000);
+
+        // Goes over budget on its own first record, and is the one to go
+        index.recordStored("background", 31000);
+
+        assertEquals("[background]", evicted.toString());
+        assertTrue(index.contains("a"));
+        assertTrue(index.contains("b"));
+        assertEquals(80000, index.getUsedBytes());
+    }
+
+    @Test
+    public void clear_forgetsConversationsAndStats() {
+        index.recordOpen("a", true);
+        index.recordStored("a", 40000);
+        index.clear();
+
+        assertFalse(index.contains("a"));
+        assertEquals(0, index.getUsedBytes());
+        assertEquals(0, index.getHitCount());
+        assertTrue(index.getHotConversations().isEmpty());
+    }
+
+    @Test
+    public void stats_reportHitRate() {
+        assertEquals(0.0, index.getHitRate(), 0.0);
+        index.recordOpen("a", false);
+        index.recordOpen("a", true);
+        index.recordOpen("b", true);
+        index.recordOpen("a", true);
+
+        assertEquals(3, index.getHitCount());
+        assertEquals(1, index.getMissCount());
+        assertEquals(0.75, index.getHitRate(), 1e-9);
+        assertTrue(index.describeStats().contains("hitRate=0.75"));
+    }
+}
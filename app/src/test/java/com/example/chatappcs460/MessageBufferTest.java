@@ -0,0 +1,114 @@
+package com.example.chatappcs460;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests and heap benchmark for {@link MessageBuffer}.
+ */
+public class MessageBufferTest {
+
+    private static final int MESSAGE_COUNT = 100000;
+    private static final String[] SENDERS = {"uid-alice-7f3a91c2", "uid-bob-0c4d82e1"};
+
+    @Test
+    public void append_roundTripsColumns() {
+        MessageBuffer buffer = new MessageBuffer();
+        int first = buffer.append("alice", "hello", 10);
+        int second = buffer.append("bob", "hi there", 20);
+        int third = buffer.append("alice", null, 30);
+
+        assertEquals(3, buffer.size());
+        assertEquals(2, buffer.senderCount());
+        assertEquals("hello", buffer.getText(first));
+        assertEquals("hi there", buffer.getText(second));
+        assertEquals("", buffer.getText(third));
+        assertEquals(buffer.getSenderIndex(first), buffer.getSenderIndex(third));
+        assertEquals("bob", buffer.getSenderId(second));
+        assertEquals(20, buffer.getTimestamp(second));
+    }
+
+    @Test
+    public void update_replacesTimestampAndText() {
+        MessageBuffer buffer = new MessageBuffer();
+        int slot = buffer.append("alice", "draft", 10);
+        buffer.append("bob", "reply", 11);
+
+        buffer.update(slot, "alice", "draft", 15);
+        assertEquals(15, buffer.getTimestamp(slot));
+        assertEquals("draft", buffer.getText(slot));
+
+        buffer.update(slot, "alice", "edited", 15);
+        assertEquals("edited", buffer.getText(slot));
+        assertEquals("reply", buffer.getText(1));
+    }
+
+    @Test
+    public void repeatedEdits_doNotGrowTextStore() {
+        MessageBuffer buffer = new MessageBuffer();
+        int other = buffer.append("bob", "unchanged", 1);
+        int slot = buffer.append("alice", "", 2);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            // Alternate growing and shrinking edits to exercise both paths
+            text.append(i % 10);
+            buffer.update(slot, "alice", i % 2 == 0 ? text.toString() : "short", 2);
+        }
+
+        assertEquals("unchanged", buffer.getText(other));
+        assertEquals("short", buffer.getText(slot));
+        assertTrue("Text store " + buffer.getTextStoreSize() + " bytes",
+                buffer.getTextStoreSize() < 4 * (text.length() + 64 * 1024));
+    }
+
+    @Test
+    public void clear_keepsSenderIndexes() {
+        MessageBuffer buffer = new MessageBuffer();
+        int alice = buffer.internSender("alice");
+        buffer.append("bob", "hi", 1);
+        buffer.clear();
+
+        assertEquals(0, buffer.size());
+        assertEquals(alice, buffer.internSender("alice"));
+        assertEquals(0, buffer.append("alice", "again", 2));
+    }
+
+    @Test
+    public void heapBenchmark_bytesPerMessage() {
+        long baseline = usedHeap();
+        List<Message> messages = new ArrayList<>(MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            // Deserialized documents get their own copy of every string
+            messages.add(new Message(new String(SENDERS[i % 2]), "message number " + i, 1700000000000L + i));
+        }
+        long listBytes = usedHeap() - baseline;
+        assertEquals(MESSAGE_COUNT, messages.size());
+        messages = null;
+
+        baseline = usedHeap();
+        MessageBuffer buffer = new MessageBuffer();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            buffer.append(new String(SENDERS[i % 2]), "message number " + i, 1700000000000L + i);
+        }
+        buffer.trimToSize();
+        long bufferBytes = usedHeap() - baseline;
+        assertEquals(MESSAGE_COUNT, buffer.size());
+
+        System.out.println("List<Message>: " + listBytes / MESSAGE_COUNT + " bytes/message");
+        // Heap readings depend on the collector, so the numbers are reported rather than asserted
+        System.out.println("MessageBuffer: " + bufferBytes / MESSAGE_COUNT + " bytes/message");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
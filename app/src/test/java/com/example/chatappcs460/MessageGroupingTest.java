@@ -0,0 +1,181 @@
+package com.example.chatappcs460;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests and arrival benchmark for {@link MessageGrouping}.
+ */
+public class MessageGroupingTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long START = 1700000000000L - 1700000000000L % DAY;
+
+    /**
+     * Records the row updates the adapter would receive.
+     */
+    private static final class RecordingAdapter implements MessageTimeline.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int slot) {
+            events.add("insert " + position);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition, int slot) {
+            events.add("move " + fromPosition + " " + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int slot) {
+            events.add("change " + position);
+        }
+
+        @Override
+        public void onRemoved(int position, int slot) {
+            events.add("remove " + position);
+        }
+    }
+
+    private final MessageTimeline timeline = new MessageTimeline();
+    private final MessageBuffer buffer = new MessageBuffer();
+    private final RecordingAdapter adapter = new RecordingAdapter();
+
+    public MessageGroupingTest() {
+        timeline.setListener(new MessageGrouping(timeline, buffer, UTC, adapter));
+    }
+
+    @Test
+    public void insertBetween_updatesOnlyFollowingRow() {
+        add("a", "alice", START + 1000);
+        add("c", "bob", START + 3000);
+        adapter.events.clear();
+
+        // A message from bob before bob's message makes that one a run continuation
+        add("b", "bob", START + 2000);
+
+        assertEquals("[insert 1, change 2]", adapter.events.toString());
+        assertEquals(MessageGrouping.FLAG_DAY_START | MessageGrouping.FLAG_RUN_START, flagsAt(0));
+        assertEquals(MessageGrouping.FLAG_RUN_START, flagsAt(1));
+        assertEquals(0, flagsAt(2));
+    }
+
+    @Test
+    public void insertOnNewDay_startsDayAndRun() {
+        add("a", "alice", START + 1000);
+        add("b", "alice", START + 2000);
+        adapter.events.clear();
+
+        add("c", "alice", START + DAY + 1000);
+
+        assertEquals("[insert 2]", adapter.events.toString());
+        assertEquals(0, flagsAt(1));
+        assertEquals(MessageGrouping.FLAG_DAY_START | MessageGrouping.FLAG_RUN_START, flagsAt(2));
+    }
+
+    @Test
+    public void lateArrivalAtStart_demotesFormerFirstRow() {
+        add("b", "alice", START + 2000);
+        adapter.events.clear();
+
+        add("a", "alice", START + 1000);
+
+        assertEquals("[insert 0, change 1]", adapter.events.toString());
+        assertEquals(0, flagsAt(1));
+    }
+
+    @Test
+    public void moveAndRemove_refreshFormerNeighbours() {
+        add("a", "alice", START + 1000);
+        int pending = buffer.append("bob", "pending", START + 5000);
+        timeline.upsert("p", pending, START + 5000, true);
+        add("c", "alice", START + 3000);
+        assertEquals(MessageGrouping.FLAG_RUN_START, flagsAt(2));
+        adapter.events.clear();
+
+        // The committed timestamp moves bob's message between alice's two messages
+        buffer.update(pending, "bob", "pending", START + 2000);
+        timeline.upsert("p", pending, START + 2000, false);
+        assertEquals("[move 2 1, change 2]", adapter.events.toString());
+        assertEquals(MessageGrouping.FLAG_RUN_START, flagsAt(1));
+        assertEquals(MessageGrouping.FLAG_RUN_START, flagsAt(2));
+        adapter.events.clear();
+
+        timeline.remove("p");
+        assertEquals("[remove 1, change 1]", adapter.events.toString());
+        assertEquals(0, flagsAt(1));
+    }
+
+    @Test
+    public void randomArrivalBenchmark_touchesOnlyNeighbours() {
+        int count = 100000;
+        Random random = new Random(3);
+        List<Integer> order = new ArrayList<>();
+        String sender = "alice";
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(4) == 0) {
+                sender = sender.equals("alice") ? "bob" : "alice";
+            }
+            // Spread the conversation over about two months
+            buffer.append(sender, "message " + i, START + i * 50000L);
+            order.add(i);
+        }
+        Collections.shuffle(order, random);
+
+        long start = System.nanoTime();
+        int maxEventsPerMessage = 0;
+        for (int slot : order) {
+            adapter.events.clear();
+            timeline.upsert("m" + slot, slot, buffer.getTimestamp(slot), false);
+            maxEventsPerMessage = Math.max(maxEventsPerMessage, adapter.events.size());
+            String inserted = adapter.events.get(0);
+            if (adapter.events.size() == 2) {
+                int position = Integer.parseInt(inserted.substring("insert ".length()));
+                assertEquals("change " + (position + 1), adapter.events.get(1));
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        System.out.println("Grouped " + count + " random arrivals in " + elapsedNanos / 1000000 + " ms ("
+                + elapsedNanos / count + " ns/message)");
+
+        assertTrue("Events per message " + maxEventsPerMessage, maxEventsPerMessage <= 2);
+        assertEquals(count, timeline.size());
+        for (int position = 0; position < count; position++) {
+            int slot = timeline.slotAt(position);
+            assertEquals(expectedFlags(position), buffer.getFlags(slot));
+        }
+    }
+
+    private void add(String id, String senderId, long timestamp) {
+        int slot = buffer.append(senderId, id, timestamp);
+        timeline.upsert(id, slot, timestamp, false);
+    }
+
+    private int flagsAt(int position) {
+        return buffer.getFlags(timeline.slotAt(position));
+    }
+
+    /**
+     * Recomputes the flags of a row from scratch, for comparison with the incremental result.
+     */
+    private int expectedFlags(int position) {
+        int slot = timeline.slotAt(position);
+        if (position == 0) {
+            return MessageGrouping.FLAG_DAY_START | MessageGrouping.FLAG_RUN_START;
+        }
+        int previous = timeline.slotAt(position - 1);
+        if (buffer.getTimestamp(previous) / DAY != buffer.getTimestamp(slot) / DAY) {
+            return MessageGrouping.FLAG_DAY_START | MessageGrouping.FLAG_RUN_START;
+        }
+        return buffer.getSenderIndex(previous) != buffer.getSenderIndex(slot) ? MessageGrouping.FLAG_RUN_START : 0;
+    }
+}
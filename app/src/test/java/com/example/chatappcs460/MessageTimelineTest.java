@@ -0,0 +1,173 @@
+package com.example.chatappcs460;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MessageTimeline} ordering under heavily reordered delivery.
+ */
+public class MessageTimelineTest {
+
+    private static final int MESSAGE_COUNT = 20000;
+
+    /**
+     * A message as delivered by a snapshot listener.
+     */
+    private static final class Delivery {
+        final String id;
+        final long timestamp;
+        final int slot;
+
+        Delivery(int slot, long timestamp) {
+            this.id = "m" + slot;
+            this.timestamp = timestamp;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Mirrors the adapter by applying every range update to a plain list.
+     */
+    private static final class ShadowAdapter implements MessageTimeline.Listener {
+        final MessageTimeline timeline;
+        final List<Integer> items = new ArrayList<>();
+        int notifications;
+
+        ShadowAdapter(MessageTimeline timeline) {
+            this.timeline = timeline;
+        }
+
+        @Override
+        public void onInserted(int position, int slot) {
+            assertEquals(slot, timeline.slotAt(position));
+            items.add(position, slot);
+            notifications++;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition, int slot) {
+            items.add(toPosition, items.remove(fromPosition));
+            notifications++;
+        }
+
+        @Override
+        public void onChanged(int position, int slot) {
+            items.set(position, slot);
+            notifications++;
+        }
+
+        @Override
+        public void onRemoved(int position, int slot) {
+            items.remove(position);
+            notifications++;
+        }
+    }
+
+    @Test
+    public void shuffledDelivery_keepsServerOrder() {
+        Random random = new Random(42);
+        List<Delivery> deliveries = new ArrayList<>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            // A narrow timestamp range forces many ties onto the ID tiebreaker
+            deliveries.add(new Delivery(i, random.nextInt(MESSAGE_COUNT / 4)));
+        }
+        Collections.shuffle(deliveries, random);
+
+        MessageTimeline timeline = new MessageTimeline();
+        ShadowAdapter adapter = new ShadowAdapter(timeline);
+        timeline.setListener(adapter);
+
+        for (Delivery delivery : deliveries) {
+            timeline.upsert(delivery.id, delivery.slot, delivery.timestamp, false);
+        }
+
+        List<Delivery> expected = new ArrayList<>(deliveries);
+        Collections.sort(expected, Comparator.<Delivery>comparingLong(d -> d.timestamp).thenComparing(d -> d.id));
+        assertEquals(MESSAGE_COUNT, timeline.size());
+        assertEquals(MESSAGE_COUNT, adapter.notifications);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            assertEquals(expected.get(i).slot, timeline.slotAt(i));
+            assertEquals(expected.get(i).slot, (int) adapter.items.get(i));
+        }
+        assertBalanced(timeline);
+        assertLinked(timeline);
+    }
+
+    @Test
+    public void pendingWrites_moveIntoPlaceWhenCommitted() {
+        Random random = new Random(7);
+        MessageTimeline timeline = new MessageTimeline();
+        ShadowAdapter adapter = new ShadowAdapter(timeline);
+        timeline.setListener(adapter);
+
+        List<Delivery> committed = new ArrayList<>();
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            Delivery delivery = new Delivery(i, random.nextInt(MESSAGE_COUNT));
+            // Pending writes carry a skewed local clock estimate
+            long estimate = delivery.timestamp + random.nextInt(20000) - 10000;
+            timeline.upsert(delivery.id, delivery.slot, estimate, true);
+            committed.add(delivery);
+        }
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            assertEquals(timeline.slotAt(i), (int) adapter.items.get(i));
+        }
+
+        Collections.shuffle(committed, random);
+        for (Delivery delivery : committed) {
+            timeline.upsert(delivery.id, delivery.slot, delivery.timestamp, false);
+        }
+
+        Collections.sort(committed, Comparator.<Delivery>comparingLong(d -> d.timestamp).thenComparing(d -> d.id));
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            assertEquals(committed.get(i).slot, (int) adapter.items.get(i));
+            assertEquals(i, timeline.indexOf(committed.get(i).id));
+        }
+        assertEquals(2 * MESSAGE_COUNT, adapter.notifications);
+        assertBalanced(timeline);
+        assertLinked(timeline);
+    }
+
+    @Test
+    public void removal_reportsPreviousPosition() {
+        MessageTimeline timeline = new MessageTimeline();
+        ShadowAdapter adapter = new ShadowAdapter(timeline);
+        timeline.setListener(adapter);
+
+        timeline.upsert("a", 0, 1, false);
+        timeline.upsert("c", 1, 3, false);
+        timeline.upsert("b", 2, 2, false);
+
+        assertEquals(1, timeline.remove("b"));
+        assertEquals(-1, timeline.remove("b"));
+        assertEquals(2, adapter.items.size());
+        assertEquals(1, (int) adapter.items.get(1));
+        assertEquals(1, timeline.nextSlot(0));
+        assertEquals(0, timeline.previousSlot(1));
+        assertEquals(-1, timeline.previousSlot(2));
+    }
+
+    private static void assertLinked(MessageTimeline timeline) {
+        int previous = -1;
+        for (int i = 0; i < timeline.size(); i++) {
+            int slot = timeline.slotAt(i);
+            assertEquals(previous, timeline.previousSlot(slot));
+            if (previous >= 0) {
+                assertEquals(slot, timeline.nextSlot(previous));
+            }
+            previous = slot;
+        }
+        assertEquals(-1, timeline.nextSlot(previous));
+    }
+
+    private static void assertBalanced(MessageTimeline timeline) {
+        double log2 = Math.log(timeline.size()) / Math.log(2);
+        assertTrue("Tree height " + timeline.height(), timeline.height() <= 4 * log2);
+    }
+}